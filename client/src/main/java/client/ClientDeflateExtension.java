@@ -0,0 +1,189 @@
+package client;
+
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+import websocket.DeflateSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * permessage-deflate (RFC 7692) for Tyrus client endpoints, which have no built-in
+ * implementation. Pass an instance in {@code ClientEndpointConfig.Builder.extensions};
+ * the server decides whether it is used, and what it answers about context takeover is
+ * honored on both directions.
+ */
+public class ClientDeflateExtension implements ExtendedExtension {
+
+    private static final String NAME = "permessage-deflate";
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String STATE = ClientDeflateExtension.class.getName();
+    private static final byte[] TAIL = {0, 0, (byte) 0xFF, (byte) 0xFF};
+
+    private static final byte CONTINUATION = 0x0;
+
+    private final DeflateSettings settings;
+
+    public ClientDeflateExtension(DeflateSettings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Parameter> getParameters() {
+        List<Parameter> offer = new ArrayList<>();
+        if (!settings.contextTakeover()) {
+            offer.add(new Flag(CLIENT_NO_CONTEXT_TAKEOVER));
+            offer.add(new Flag(SERVER_NO_CONTEXT_TAKEOVER));
+        }
+        return offer;
+    }
+
+    @Override
+    public List<Parameter> onExtensionNegotiation(ExtensionContext context, List<Parameter> requestedParameters) {
+        // only called on servers
+        return requestedParameters;
+    }
+
+    @Override
+    public void onHandshakeResponse(ExtensionContext context, List<Parameter> responseParameters) {
+        State state = new State();
+        for (Parameter parameter : responseParameters) {
+            switch (parameter.getName()) {
+                case CLIENT_NO_CONTEXT_TAKEOVER -> state.resetDeflater = true;
+                case SERVER_NO_CONTEXT_TAKEOVER -> state.resetInflater = true;
+                default -> {
+                }
+            }
+        }
+        context.getProperties().put(STATE, state);
+    }
+
+    @Override
+    public Frame processIncoming(ExtensionContext context, Frame frame) {
+        State state = (State) context.getProperties().get(STATE);
+        if (state == null || frame.isControlFrame()) {
+            return frame;
+        }
+        boolean compressed = (frame.getOpcode() == CONTINUATION) ? state.inflating : frame.isRsv1();
+        if (!compressed) {
+            return frame;
+        }
+        state.inflating = !frame.isFin();
+        return Frame.builder(frame).rsv1(false).payloadData(state.inflate(frame.getPayloadData(), frame.isFin()))
+                .build();
+    }
+
+    @Override
+    public Frame processOutgoing(ExtensionContext context, Frame frame) {
+        State state = (State) context.getProperties().get(STATE);
+        if (state == null || frame.isControlFrame()) {
+            return frame;
+        }
+        boolean first = frame.getOpcode() != CONTINUATION;
+        boolean compress = first
+                ? !frame.isFin() || frame.getPayloadLength() >= settings.minimumSize()
+                : state.deflating;
+        if (!compress) {
+            return frame;
+        }
+        state.deflating = !frame.isFin();
+        return Frame.builder(frame).rsv1(first).payloadData(state.deflate(frame.getPayloadData(), frame.isFin()))
+                .build();
+    }
+
+    @Override
+    public void destroy(ExtensionContext context) {
+        State state = (State) context.getProperties().remove(STATE);
+        if (state != null) {
+            state.deflater.end();
+            state.inflater.end();
+        }
+    }
+
+    /**
+     * The compression state of one connection.
+     */
+    private static final class State {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] buffer = new byte[8192];
+        private boolean resetDeflater;
+        private boolean resetInflater;
+        private boolean deflating;
+        private boolean inflating;
+
+        byte[] deflate(byte[] payload, boolean fin) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 16);
+            deflater.setInput(payload);
+            int count;
+            do {
+                count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, count);
+            } while (count == buffer.length);
+            byte[] compressed = out.toByteArray();
+            if (!fin) {
+                return compressed;
+            }
+            if (resetDeflater) {
+                deflater.reset();
+            }
+            // a message ends without the empty block SYNC_FLUSH leaves behind
+            return endsWithTail(compressed) ? Arrays.copyOf(compressed, compressed.length - TAIL.length) : compressed;
+        }
+
+        byte[] inflate(byte[] payload, boolean fin) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4 + 16);
+            try {
+                inflate(payload, out);
+                if (fin) {
+                    inflate(TAIL, out);
+                    if (resetInflater) {
+                        inflater.reset();
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("bad compressed message: " + e.getMessage(), e);
+            }
+            return out.toByteArray();
+        }
+
+        private void inflate(byte[] input, ByteArrayOutputStream out) throws DataFormatException {
+            inflater.setInput(input);
+            while (!inflater.needsInput()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, count);
+            }
+        }
+
+        private static boolean endsWithTail(byte[] bytes) {
+            return bytes.length >= TAIL.length
+                    && Arrays.equals(bytes, bytes.length - TAIL.length, bytes.length, TAIL, 0, TAIL.length);
+        }
+    }
+
+    private record Flag(String name) implements Parameter {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getValue() {
+            return null;
+        }
+    }
+}
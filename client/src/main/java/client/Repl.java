@@ -3,10 +3,13 @@ package client;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPosition;
+import chess.InvalidMoveException;
+import websocket.commands.ConnectCommand;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
@@ -208,11 +211,7 @@ public class Repl implements ServerMessageObserver {
             Integer gameID = lastGameList.get(index).gameID();
             serverFacade.joinGame(authToken, gameID, color);
             webSocket = new WebSocketFacade(serverUrl, this);
-            UserGameCommand connectCmd = new UserGameCommand(
-                    UserGameCommand.CommandType.CONNECT,
-                    authToken,
-                    gameID
-            );
+            ConnectCommand connectCmd = new ConnectCommand(authToken, gameID, true);
             webSocket.sendCommand(connectCmd);
             currentGameID = gameID;
             currentPerspective = color.equals("BLACK")
@@ -243,11 +242,7 @@ public class Repl implements ServerMessageObserver {
             Integer gameID = lastGameList.get(index).gameID();
 
             webSocket = new WebSocketFacade(serverUrl, this);
-            UserGameCommand connectCmd = new UserGameCommand(
-                    UserGameCommand.CommandType.CONNECT,
-                    authToken,
-                    gameID
-            );
+            ConnectCommand connectCmd = new ConnectCommand(authToken, gameID, true);
             webSocket.sendCommand(connectCmd);
 
             currentGameID = gameID;
@@ -271,6 +266,7 @@ public class Repl implements ServerMessageObserver {
             case "leave" -> handleLeave();
             case "move" -> handleMove(tokens);
             case "resign" -> handleResign(tokens);
+            case "draw" -> handleClaimDraw(tokens);
             case "highlight" -> handleHighlight(tokens);
             case "quit", "exit" -> quit();
             default -> ClientResponse.error("Unknown command.");
@@ -413,6 +409,28 @@ public class Repl implements ServerMessageObserver {
         }
     }
 
+    private ClientResponse handleClaimDraw(String[] tokens) {
+        if (tokens.length != 1) {
+            return ClientResponse.error("Usage: draw");
+        }
+
+        if (webSocket == null || currentGameID == null) {
+            return ClientResponse.error("Not connected to a game.");
+        }
+
+        try {
+            UserGameCommand drawCmd = new UserGameCommand(
+                    UserGameCommand.CommandType.CLAIM_DRAW,
+                    authToken,
+                    currentGameID
+            );
+            webSocket.sendCommand(drawCmd);
+            return ClientResponse.success("Draw claim sent.");
+        } catch (Exception e) {
+            return ClientResponse.error("Failed to claim a draw.");
+        }
+    }
+
     private ClientResponse quit() {
         running = false;
         return ClientResponse.success("Exiting...");
@@ -464,6 +482,7 @@ public class Repl implements ServerMessageObserver {
                     move <from> <to>
                     highlight <square>
                     resign
+                    draw
                     leave
                     quit
                     """;
@@ -480,6 +499,11 @@ public class Repl implements ServerMessageObserver {
                 highlightedSquares.clear();
                 System.out.println(boardRenderer.drawBoard(currentGame, currentPerspective, highlightedSquares));
             }
+            case MOVE -> {
+                if (applyMove((MoveMessage) message)) {
+                    System.out.println(boardRenderer.drawBoard(currentGame, currentPerspective, highlightedSquares));
+                }
+            }
             case NOTIFICATION -> {
                 NotificationMessage notificationMessage = (NotificationMessage) message;
                 System.out.println(notificationMessage.getMessage());
@@ -491,4 +515,35 @@ public class Repl implements ServerMessageObserver {
         }
         printPrompt();
     }
-}
\ No newline at end of file
+
+    /**
+     * Plays a move update on the local game. If the update does not follow on from the
+     * local game the whole game is asked for again, and nothing is drawn until it comes.
+     *
+     * @return true if the local game now includes the move
+     */
+    private boolean applyMove(MoveMessage message) {
+        if (currentGame != null && message.getSequence() == currentGame.getPlyNumber() + 1) {
+            try {
+                if (currentGame.isSnapshot()) {
+                    currentGame = currentGame.copy();
+                }
+                currentGame.makeMove(message.getMove());
+                highlightedSquares.clear();
+                return true;
+            } catch (InvalidMoveException e) {
+                // the local game has drifted from the server's, so fall through and resync
+            }
+        } else if (currentGame != null && message.getSequence() <= currentGame.getPlyNumber()) {
+            // already covered by a full game that arrived first
+            return false;
+        }
+
+        try {
+            webSocket.sendCommand(new UserGameCommand(UserGameCommand.CommandType.SYNC, authToken, currentGameID));
+        } catch (ResponseException e) {
+            System.out.println("Failed to reload game: " + e.getMessage());
+        }
+        return false;
+    }
+}
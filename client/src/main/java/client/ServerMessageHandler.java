@@ -3,6 +3,7 @@ package client;
 import com.google.gson.Gson;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
 import websocket.messages.NotificationMessage;
 import websocket.messages.ServerMessage;
 
@@ -30,6 +31,9 @@ public class ServerMessageHandler {
             case ERROR:
                 fullMessage = gson.fromJson(message, ErrorMessage.class);
                 break;
+            case MOVE:
+                fullMessage = gson.fromJson(message, MoveMessage.class);
+                break;
             case NOTIFICATION:
                 fullMessage = gson.fromJson(message, NotificationMessage.class);
                 break;
@@ -1,36 +1,42 @@
 package client;
 
 import com.google.gson.Gson;
+import websocket.DeflateSettings;
 import websocket.commands.UserGameCommand;
 
-import jakarta.websocket.ClientEndpoint;
-import jakarta.websocket.CloseReason;
+import jakarta.websocket.ClientEndpointConfig;
 import jakarta.websocket.ContainerProvider;
-import jakarta.websocket.OnClose;
-import jakarta.websocket.OnError;
-import jakarta.websocket.OnMessage;
-import jakarta.websocket.OnOpen;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
 import jakarta.websocket.Session;
 import jakarta.websocket.WebSocketContainer;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
-@ClientEndpoint
-public class WebSocketFacade {
+public class WebSocketFacade extends Endpoint {
     private Session session;
     private final Object openLock = new Object();
     private boolean open = false;
     private final ServerMessageHandler messageHandler;
 
     public WebSocketFacade(String url, ServerMessageObserver observer) throws ResponseException {
+        this(url, observer, DeflateSettings.DEFAULT);
+    }
+
+    public WebSocketFacade(String url, ServerMessageObserver observer, DeflateSettings deflate)
+            throws ResponseException {
         try {
             this.messageHandler = new ServerMessageHandler(observer);
             String wsURL = url.replace("http://", "ws://").replace("https://", "wss://") + "/ws";
             WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            container.connectToServer(this, URI.create(wsURL));
+            ClientEndpointConfig config = ClientEndpointConfig.Builder.create()
+                    .extensions(deflate.enabled() ? List.of(new ClientDeflateExtension(deflate)) : List.of())
+                    .build();
+            container.connectToServer(this, config, URI.create(wsURL));
 
             synchronized (openLock) {
                 long end = System.currentTimeMillis() + 3000;
@@ -49,8 +55,9 @@ public class WebSocketFacade {
         }
     }
 
-    @OnOpen
-    public void onOpen(Session session) {
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        session.addMessageHandler(String.class, this::onMessage);
         this.session = session;
         synchronized (openLock) {
             open = true;
@@ -58,7 +65,6 @@ public class WebSocketFacade {
         }
     }
 
-    @OnMessage
     public void onMessage(String message) {
         messageHandler.onMessage(message);
     }
@@ -0,0 +1,273 @@
+package client;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import io.javalin.Javalin;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.HandshakeResponse;
+import jakarta.websocket.Extension;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import server.websocket.ConnectionManager;
+import server.websocket.ServerDeflateExtension;
+import websocket.DeflateSettings;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.NotificationMessage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ClientDeflateExtension against the server's extension, over real connections. The frames
+ * the server sends are checked on their own in the server's DeflateTest.
+ */
+public class DeflateTest {
+
+    private static final int GAME = 1;
+    private static final Gson GSON = new Gson();
+
+    private final ConnectionManager connections = new ConnectionManager();
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final List<Session> sessions = new ArrayList<>();
+    private Javalin javalin;
+    private ConnectionStatistics statistics;
+    private CountDownLatch joined;
+    private String answer;
+
+    @AfterEach
+    public void stop() throws Exception {
+        for (Session session : sessions) {
+            session.close();
+        }
+        sessions.clear();
+        if (javalin != null) {
+            javalin.stop();
+            javalin = null;
+        }
+    }
+
+    @Test
+    public void compressesBothWays() throws Exception {
+        start(DeflateSettings.DEFAULT);
+        List<BlockingQueue<String>> inboxes = connect(1, DeflateSettings.DEFAULT);
+        assertEquals(List.of("permessage-deflate"), extensionNames(sessions.get(0)));
+
+        List<String> messages = gameMessages(30);
+        messages.add(GSON.toJson(new NotificationMessage("white moved e2 to e4")));
+        String command = messages.get(10);
+        sessions.get(0).getBasicRemote().sendText(command);
+        assertEquals(command, received.poll(5, TimeUnit.SECONDS));
+
+        for (String message : messages) {
+            connections.broadcast(GAME, message);
+        }
+        for (String message : messages) {
+            assertEquals(message, take(inboxes.get(0)));
+        }
+        long sent = closeAll();
+        assertTrue(sent * 3 < totalLength(messages), sent + " bytes sent");
+    }
+
+    @Test
+    public void honorsContextTakeoverSettings() throws Exception {
+        DeflateSettings fresh = new DeflateSettings(true, 0, false);
+        start(fresh);
+        List<BlockingQueue<String>> inboxes = connect(1, DeflateSettings.DEFAULT);
+        assertTrue(answer.contains("server_no_context_takeover"), answer);
+        assertTrue(answer.contains("client_no_context_takeover"), answer);
+
+        List<String> messages = gameMessages(10);
+        for (String message : messages) {
+            connections.broadcast(GAME, message);
+            sessions.get(0).getBasicRemote().sendText(message);
+        }
+        for (String message : messages) {
+            assertEquals(message, take(inboxes.get(0)));
+            assertEquals(message, received.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void worksWithoutTheServer() throws Exception {
+        start(DeflateSettings.OFF);
+        List<BlockingQueue<String>> inboxes = connect(1, DeflateSettings.DEFAULT);
+        assertEquals(List.of(), extensionNames(sessions.get(0)));
+
+        connections.broadcast(GAME, "plain");
+        assertEquals("plain", take(inboxes.get(0)));
+    }
+
+    @Test
+    public void comparesBroadcastCost() throws Exception {
+        DeflateSettings[] variants = {
+                DeflateSettings.OFF,
+                DeflateSettings.DEFAULT,
+                new DeflateSettings(true, DeflateSettings.DEFAULT.minimumSize(), false),
+        };
+        int observers = 50;
+        List<String> messages = gameMessages(60);
+        long[] perMessage = new long[variants.length];
+        for (int i = 0; i < variants.length; i++) {
+            DeflateSettings settings = variants[i];
+            stop();
+            start(settings);
+            List<BlockingQueue<String>> inboxes = connect(observers, settings);
+
+            // the broadcasting thread does the deflating, so its CPU time is the server's cost
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long cpu = threads.getCurrentThreadCpuTime();
+            for (String message : messages) {
+                connections.broadcast(GAME, message);
+            }
+            cpu = threads.getCurrentThreadCpuTime() - cpu;
+            for (BlockingQueue<String> inbox : inboxes) {
+                for (String message : messages) {
+                    assertEquals(message, take(inbox));
+                }
+            }
+            perMessage[i] = closeAll() / observers / messages.size();
+
+            System.out.printf("%s: %d bytes per observer per message (%d as text), "
+                            + "%d us CPU per broadcast to %d observers%n",
+                    settings, perMessage[i], totalLength(messages) / messages.size(),
+                    cpu / 1000 / messages.size(), observers);
+        }
+        // each LOAD_GAME differs from the one before by a move, which only context takeover can use
+        assertTrue(perMessage[1] * 3 < perMessage[0], perMessage[1] + " vs " + perMessage[0] + " bytes");
+        assertTrue(perMessage[1] * 3 < perMessage[2], perMessage[1] + " vs " + perMessage[2] + " bytes");
+        assertTrue(perMessage[2] < perMessage[0], perMessage[2] + " vs " + perMessage[0] + " bytes");
+    }
+
+    private void start(DeflateSettings settings) {
+        javalin = Javalin.create(config -> config.jetty.modifyServletContextHandler(
+                handler -> ServerDeflateExtension.install(handler, settings))).ws("/ws", ws -> ws.onMessage(ctx -> {
+                    if (ctx.message().equals("join")) {
+                        connections.add(ctx.sessionId(), GAME, ctx);
+                        joined.countDown();
+                    } else {
+                        received.add(ctx.message());
+                    }
+                })).start(0);
+        statistics = new ConnectionStatistics();
+        javalin.jettyServer().server().getConnectors()[0].addBean(statistics);
+        LifeCycle.start(statistics);
+    }
+
+    /**
+     * Closes the client sessions and waits for the server to see them go, since the
+     * connector only adds up the bytes of a connection when it closes.
+     *
+     * @return the bytes the server sent, handshakes included
+     */
+    private long closeAll() throws Exception {
+        for (Session session : sessions) {
+            session.close();
+        }
+        sessions.clear();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (statistics.getConnections() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, statistics.getConnections());
+        assertTrue(statistics.getConnectionsTotal() > 0);
+        return statistics.getSentBytes();
+    }
+
+    private List<BlockingQueue<String>> connect(int count, DeflateSettings settings) throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        URI uri = URI.create("ws://localhost:" + javalin.port() + "/ws");
+        ClientEndpointConfig config = ClientEndpointConfig.Builder.create()
+                .extensions(List.of(new ClientDeflateExtension(settings)))
+                .configurator(new ClientEndpointConfig.Configurator() {
+                    @Override
+                    public void afterResponse(HandshakeResponse response) {
+                        answer = String.valueOf(response.getHeaders().get("Sec-WebSocket-Extensions"));
+                    }
+                }).build();
+        joined = new CountDownLatch(count);
+        List<BlockingQueue<String>> inboxes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BlockingQueue<String> inbox = new LinkedBlockingQueue<>();
+            Session session = container.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(String.class, inbox::add);
+                }
+            }, config, uri);
+            session.getBasicRemote().sendText("join");
+            sessions.add(session);
+            inboxes.add(inbox);
+        }
+        assertTrue(joined.await(10, TimeUnit.SECONDS));
+        return inboxes;
+    }
+
+    /**
+     * @return the LOAD_GAME messages of a random game, one per move
+     */
+    private static List<String> gameMessages(int moves) throws Exception {
+        Random random = new Random(25);
+        ChessGame game = new ChessGame();
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < moves; i++) {
+            List<ChessMove> legal = new ArrayList<>();
+            for (int row = 1; row <= 8; row++) {
+                for (int col = 1; col <= 8; col++) {
+                    ChessPosition position = new ChessPosition(row, col);
+                    ChessPiece piece = game.getBoard().getPiece(position);
+                    if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                        legal.addAll(game.validMoves(position));
+                    }
+                }
+            }
+            if (legal.isEmpty()) {
+                break;
+            }
+            game.makeMove(legal.get(random.nextInt(legal.size())));
+            messages.add(GSON.toJson(new LoadGameMessage(game.snapshot())));
+        }
+        return messages;
+    }
+
+    private static List<String> extensionNames(Session session) {
+        List<String> names = new ArrayList<>();
+        for (Extension extension : session.getNegotiatedExtensions()) {
+            names.add(extension.getName());
+        }
+        return names;
+    }
+
+    private static long totalLength(List<String> messages) {
+        long total = 0;
+        for (String message : messages) {
+            total += message.length();
+        }
+        return total;
+    }
+
+    private static String take(BlockingQueue<String> inbox) throws InterruptedException {
+        String message = inbox.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message, "no message arrived");
+        return message;
+    }
+}
@@ -45,7 +45,7 @@ public class MemoryDataAccess implements DataAccess {
     @Override
     public int createGame(String gameName) {
         int gameID = nextGameID++;
-        games.put(gameID, new GameData(gameID, null, null, gameName, new ChessGame()));
+        games.put(gameID, new GameData(gameID, null, null, gameName, new ChessGame().snapshot()));
         return gameID;
     }
 
@@ -1,6 +1,7 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessGameCodec;
 import com.google.gson.Gson;
 import model.AuthData;
 import model.GameData;
@@ -45,7 +46,9 @@ public class MySQLDataAccess implements DataAccess {
                                 whiteUsername VARCHAR(255),
                                 blackUsername VARCHAR(255),
                                 gameName VARCHAR(255) NOT NULL,
-                                gameData TEXT NOT NULL,
+                                gameData TEXT,
+                                gameState BINARY(39),
+                                gameHistory BLOB,
                                 gameOver BOOLEAN NOT NULL DEFAULT FALSE
                             )
                             """);
@@ -59,6 +62,23 @@ public class MySQLDataAccess implements DataAccess {
                     } catch (SQLException ignored) {
                         // Column already exists
                     }
+
+                    // Games are now stored with ChessGameCodec: the fixed size record in gameState
+                    // and the repetition keys in gameHistory. Rows still holding JSON are converted
+                    // the first time they are read, so gameData has to accept NULL
+                    try {
+                        stmt.executeUpdate("ALTER TABLE game ADD COLUMN gameState BINARY(39)");
+                    } catch (SQLException ignored) {
+                        // Column already exists
+                    }
+                    try {
+                        stmt.executeUpdate("ALTER TABLE game ADD COLUMN gameHistory BLOB");
+                    } catch (SQLException ignored) {
+                        // Column already exists
+                    }
+                    if (!isNullable(conn, "game", "gameData")) {
+                        stmt.executeUpdate("ALTER TABLE game MODIFY gameData TEXT NULL");
+                    }
                 }
             }
         } catch (Exception e) {
@@ -67,6 +87,20 @@ public class MySQLDataAccess implements DataAccess {
         }
     }
 
+    private static boolean isNullable(Connection conn, String table, String column) throws SQLException {
+        String sql = """
+                SELECT IS_NULLABLE FROM INFORMATION_SCHEMA.COLUMNS
+                WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=? AND COLUMN_NAME=?
+                """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            stmt.setString(2, column);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getString(1).equals("YES");
+            }
+        }
+    }
+
     @Override
     public void clear() throws DataAccessException {
         String[] statements = {
@@ -179,19 +213,18 @@ public class MySQLDataAccess implements DataAccess {
     @Override
     public int createGame(String gameName) throws DataAccessException {
         String sql = """
-                INSERT INTO game (whiteUsername, blackUsername, gameName, gameData, gameOver)
+                INSERT INTO game (whiteUsername, blackUsername, gameName, gameState, gameOver)
                 VALUES (?, ?, ?, ?, ?)
                 """;
 
-        ChessGame game = new ChessGame();
-        String gameJson = gson.toJson(game);
+        byte[] gameState = ChessGameCodec.encode(new ChessGame());
 
         try (var conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, null);
             stmt.setString(2, null);
             stmt.setString(3, gameName);
-            stmt.setString(4, gameJson);
+            stmt.setBytes(4, gameState);
             stmt.setBoolean(5, false);
             stmt.executeUpdate();
 
@@ -210,30 +243,27 @@ public class MySQLDataAccess implements DataAccess {
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
         String sql = """
-                SELECT gameID, whiteUsername, blackUsername, gameName, gameData, gameOver
+                SELECT gameID, whiteUsername, blackUsername, gameName, gameData, gameState, gameHistory, gameOver
                 FROM game
                 WHERE gameID=?
                 """;
 
-        try (var conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, gameID);
+        List<GameData> jsonRows = new ArrayList<>();
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    ChessGame game = gson.fromJson(rs.getString("gameData"), ChessGame.class);
-                    return new GameData(
-                            rs.getInt("gameID"),
-                            rs.getString("whiteUsername"),
-                            rs.getString("blackUsername"),
-                            rs.getString("gameName"),
-                            game,
-                            rs.getBoolean("gameOver")
-                    );
+        try (var conn = DatabaseManager.getConnection()) {
+            GameData game = null;
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, gameID);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        game = readGame(rs, jsonRows);
+                    }
                 }
             }
 
-            return null;
+            storeBinary(conn, jsonRows);
+            return game;
         } catch (Exception e) {
             throw new DataAccessException("Unable to get game");
         }
@@ -242,28 +272,23 @@ public class MySQLDataAccess implements DataAccess {
     @Override
     public List<GameData> listGames() throws DataAccessException {
         String sql = """
-                SELECT gameID, whiteUsername, blackUsername, gameName, gameData, gameOver
+                SELECT gameID, whiteUsername, blackUsername, gameName, gameData, gameState, gameHistory, gameOver
                 FROM game
                 """;
 
         List<GameData> games = new ArrayList<>();
+        List<GameData> jsonRows = new ArrayList<>();
 
-        try (var conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                ChessGame game = gson.fromJson(rs.getString("gameData"), ChessGame.class);
-                games.add(new GameData(
-                        rs.getInt("gameID"),
-                        rs.getString("whiteUsername"),
-                        rs.getString("blackUsername"),
-                        rs.getString("gameName"),
-                        game,
-                        rs.getBoolean("gameOver")
-                ));
+        try (var conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    games.add(readGame(rs, jsonRows));
+                }
             }
 
+            storeBinary(conn, jsonRows);
             return games;
         } catch (Exception e) {
             throw new DataAccessException("Unable to list games");
@@ -274,7 +299,8 @@ public class MySQLDataAccess implements DataAccess {
     public void updateGame(GameData game) throws DataAccessException {
         String sql = """
                 UPDATE game
-                SET whiteUsername=?, blackUsername=?, gameName=?, gameData=?, gameOver=?
+                SET whiteUsername=?, blackUsername=?, gameName=?, gameData=NULL, gameState=?, gameHistory=?,
+                    gameOver=?
                 WHERE gameID=?
                 """;
 
@@ -283,9 +309,10 @@ public class MySQLDataAccess implements DataAccess {
             stmt.setString(1, game.whiteUsername());
             stmt.setString(2, game.blackUsername());
             stmt.setString(3, game.gameName());
-            stmt.setString(4, gson.toJson(game.game()));
-            stmt.setBoolean(5, game.gameOver());
-            stmt.setInt(6, game.gameID());
+            stmt.setBytes(4, ChessGameCodec.encode(game.game()));
+            stmt.setBytes(5, ChessGameCodec.encodeHistory(game.game()));
+            stmt.setBoolean(6, game.gameOver());
+            stmt.setInt(7, game.gameID());
 
             int rows = stmt.executeUpdate();
             if (rows == 0) {
@@ -295,4 +322,51 @@ public class MySQLDataAccess implements DataAccess {
             throw new DataAccessException("Unable to update game");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Builds the game on the current row, decoding the binary state when the row has one.
+     * Rows written before the binary column existed are parsed from JSON and added to
+     * {@code jsonRows}, for {@link #storeBinary} to rewrite once the result set is closed.
+     */
+    private GameData readGame(ResultSet rs, List<GameData> jsonRows) throws SQLException {
+        byte[] gameState = rs.getBytes("gameState");
+        ChessGame game = (gameState != null)
+                ? ChessGameCodec.decode(gameState, rs.getBytes("gameHistory"))
+                : gson.fromJson(rs.getString("gameData"), ChessGame.class);
+        GameData data = new GameData(
+                rs.getInt("gameID"),
+                rs.getString("whiteUsername"),
+                rs.getString("blackUsername"),
+                rs.getString("gameName"),
+                game,
+                rs.getBoolean("gameOver")
+        );
+        if (gameState == null) {
+            jsonRows.add(data);
+        }
+        return data;
+    }
+
+    /**
+     * Rewrites games that were read from JSON in the binary form, so the table migrates
+     * itself as games are read
+     */
+    private void storeBinary(Connection conn, List<GameData> jsonRows) throws SQLException {
+        if (jsonRows.isEmpty()) {
+            return;
+        }
+        String sql = """
+                UPDATE game SET gameState=?, gameHistory=?, gameData=NULL
+                WHERE gameID=? AND gameState IS NULL
+                """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (GameData game : jsonRows) {
+                stmt.setBytes(1, ChessGameCodec.encode(game.game()));
+                stmt.setBytes(2, ChessGameCodec.encodeHistory(game.game()));
+                stmt.setInt(3, game.gameID());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
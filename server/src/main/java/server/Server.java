@@ -10,7 +10,9 @@ import model.UserData;
 import service.GameService;
 import service.UserService;
 import dataaccess.MySQLDataAccess;
+import server.websocket.ServerDeflateExtension;
 import server.websocket.WebSocketHandler;
+import websocket.DeflateSettings;
 
 import java.time.Duration;
 
@@ -25,12 +27,17 @@ public class Server {
     private final WebSocketHandler webSocketHandler;
 
     public Server() {
+        this(DeflateSettings.DEFAULT);
+    }
+
+    public Server(DeflateSettings deflate) {
         javalin = Javalin.create(config -> {
             config.staticFiles.add("web");
 
             config.jetty.modifyWebSocketServletFactory(ws -> {
                 ws.setIdleTimeout(Duration.ofMinutes(3));
             });
+            config.jetty.modifyServletContextHandler(handler -> ServerDeflateExtension.install(handler, deflate));
         });
         try {
             dao = new MySQLDataAccess();
@@ -1,21 +1,45 @@
 package server.websocket;
 
 import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.common.WebSocketSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
+/**
+ * Tracks the connections of each game and broadcasts to them. A broadcast message is
+ * encoded to UTF-8 once, and every recipient gets a duplicate of that one read-only
+ * buffer, sent as a text frame through Jetty's asynchronous frame API, so a move in a
+ * busy game costs one encoding rather than one per observer.
+ */
 public class ConnectionManager {
 
-    private final Map<Integer, Map<String, WsContext>> connections = new ConcurrentHashMap<>();
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionManager.class);
+
+    private record Connection(WsContext ctx, boolean moveUpdates) {
+    }
+
+    private final Map<Integer, Map<String, Connection>> connections = new ConcurrentHashMap<>();
 
     public void add(String username, Integer gameID, WsContext ctx) {
-        connections.computeIfAbsent(gameID, k -> new ConcurrentHashMap<>()).put(username, ctx);
+        add(username, gameID, ctx, false);
+    }
+
+    public void add(String username, Integer gameID, WsContext ctx, boolean moveUpdates) {
+        connections.computeIfAbsent(gameID, k -> new ConcurrentHashMap<>())
+                .put(username, new Connection(ctx, moveUpdates));
     }
 
     public void remove(String username, Integer gameID) {
-        Map<String, WsContext> gameConnections = connections.get(gameID);
+        Map<String, Connection> gameConnections = connections.get(gameID);
         if (gameConnections != null) {
             gameConnections.remove(username);
             if (gameConnections.isEmpty()) {
@@ -25,26 +49,87 @@ public class ConnectionManager {
     }
 
     public void broadcast(Integer gameID, String message) {
-        Map<String, WsContext> gameConnections = connections.get(gameID);
+        Map<String, Connection> gameConnections = connections.get(gameID);
         if (gameConnections == null){
             return;
         }
 
-        for (WsContext ctx : gameConnections.values()) {
-            ctx.send(message);
+        ByteBuffer payload = encode(message);
+        for (Map.Entry<String, Connection> entry : gameConnections.entrySet()) {
+            send(gameID, entry.getKey(), entry.getValue(), payload);
         }
     }
 
     public void broadcastExcept(Integer gameID, String excludedUser, String message) {
-        Map<String, WsContext> gameConnections = connections.get(gameID);
+        Map<String, Connection> gameConnections = connections.get(gameID);
         if (gameConnections == null){
             return;
         }
 
-        for (Map.Entry<String, WsContext> entry : gameConnections.entrySet()) {
+        ByteBuffer payload = encode(message);
+        for (Map.Entry<String, Connection> entry : gameConnections.entrySet()) {
             if (!entry.getKey().equals(excludedUser)) {
-                entry.getValue().send(message);
+                send(gameID, entry.getKey(), entry.getValue(), payload);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Sends a move to everyone in the game: the short move message to connections that
+     * asked for move updates, the whole game to the rest. The whole game is only
+     * serialized if some connection still needs it.
+     */
+    public void broadcastMove(Integer gameID, Supplier<String> loadGame, String move) {
+        Map<String, Connection> gameConnections = connections.get(gameID);
+        if (gameConnections == null){
+            return;
+        }
+
+        ByteBuffer movePayload = encode(move);
+        ByteBuffer loadGamePayload = null;
+        for (Map.Entry<String, Connection> entry : gameConnections.entrySet()) {
+            Connection connection = entry.getValue();
+            if (connection.moveUpdates()) {
+                send(gameID, entry.getKey(), connection, movePayload);
+            } else {
+                if (loadGamePayload == null) {
+                    loadGamePayload = encode(loadGame.get());
+                }
+                send(gameID, entry.getKey(), connection, loadGamePayload);
+            }
+        }
+    }
+
+    private static ByteBuffer encode(String message) {
+        return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Queues the payload as one text frame. Each send gets its own duplicate, since
+     * Jetty moves the position of the buffer it writes from. A connection whose send
+     * fails is dropped from the game, as it will not get later messages either.
+     */
+    private void send(Integer gameID, String username, Connection connection, ByteBuffer payload) {
+        WsContext ctx = connection.ctx();
+        if (ctx.session instanceof WebSocketSession session) {
+            Callback callback = Callback.from(() -> { }, failure -> {
+                LOG.warn("Dropping {} from game {} after a failed send: {}", username, gameID, failure.toString());
+                remove(username, gameID, connection);
+            });
+            session.getCoreSession().sendFrame(new Frame(OpCode.TEXT, payload.duplicate()), callback, false);
+        } else {
+            ctx.send(StandardCharsets.UTF_8.decode(payload.duplicate()).toString());
+        }
+    }
+
+    /**
+     * Removes the connection only if it is still the one registered, so a user who has
+     * reconnected in the meantime keeps the new connection
+     */
+    private void remove(String username, Integer gameID, Connection connection) {
+        Map<String, Connection> gameConnections = connections.get(gameID);
+        if (gameConnections != null && gameConnections.remove(username, connection) && gameConnections.isEmpty()) {
+            connections.remove(gameID, gameConnections);
+        }
+    }
+}
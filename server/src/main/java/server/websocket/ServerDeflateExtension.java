@@ -0,0 +1,93 @@
+package server.websocket;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.WebSocketExtensionRegistry;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.eclipse.jetty.websocket.core.server.WebSocketServerComponents;
+import websocket.DeflateSettings;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty's permessage-deflate, configured from {@link DeflateSettings}, with one hook for
+ * the minimum size: a single-frame message below it is passed on uncompressed, with RSV1
+ * clear, which RFC 7692 allows for any message.
+ * <p>
+ * Jetty has no public setting for this, so the hook subclasses its extension; server/pom.xml
+ * pins the Jetty version this was written against, and DeflateTest checks the frames on the
+ * wire. A short message only skips the deflater while no compressed message is still on its
+ * way through Jetty's flusher, so it cannot overtake one; otherwise it is compressed like
+ * any other.
+ */
+public class ServerDeflateExtension extends PerMessageDeflateExtension {
+
+    private static final String NAME = "permessage-deflate";
+
+    // messages handed to the deflater whose last frame has not been passed on yet
+    private final AtomicInteger deflating = new AtomicInteger();
+    private DeflateSettings settings = DeflateSettings.DEFAULT;
+
+    /**
+     * Sets up permessage-deflate on the WebSocket endpoints of the context: replaces
+     * Jetty's extension with this one, or removes it when the settings turn it off.
+     */
+    public static void install(ServletContextHandler handler, DeflateSettings settings) {
+        handler.addEventListener(new ServletContextListener() {
+            @Override
+            public void contextInitialized(ServletContextEvent event) {
+                WebSocketComponents components = WebSocketServerComponents.ensureWebSocketComponents(
+                        handler.getServer(), event.getServletContext());
+                WebSocketExtensionRegistry registry = components.getExtensionRegistry();
+                if (settings.enabled()) {
+                    components.addBean(settings);
+                    registry.register(NAME, ServerDeflateExtension.class);
+                } else {
+                    registry.unregister(NAME);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void init(ExtensionConfig config, WebSocketComponents components) {
+        DeflateSettings configured = components.getBean(DeflateSettings.class);
+        if (configured != null) {
+            settings = configured;
+        }
+        ExtensionConfig negotiated = new ExtensionConfig(config);
+        if (!settings.contextTakeover()) {
+            negotiated.setParameter("server_no_context_takeover");
+            negotiated.setParameter("client_no_context_takeover");
+        }
+        super.init(negotiated, components);
+    }
+
+    @Override
+    public void sendFrame(Frame frame, Callback callback, boolean batch) {
+        boolean first = frame.getOpCode() == OpCode.TEXT || frame.getOpCode() == OpCode.BINARY;
+        if (first && frame.isFin() && frame.getPayloadLength() < settings.minimumSize() && deflating.get() == 0) {
+            super.nextOutgoingFrame(frame, callback, batch);
+            return;
+        }
+        if (first) {
+            deflating.incrementAndGet();
+        }
+        super.sendFrame(frame, callback, batch);
+    }
+
+    @Override
+    protected void nextOutgoingFrame(Frame frame, Callback callback, boolean batch) {
+        // everything Jetty's flusher passes on comes through here, in order
+        super.nextOutgoingFrame(frame, callback, batch);
+        if (frame.isDataFrame() && frame.isFin()) {
+            deflating.decrementAndGet();
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package server.websocket;
 
 import chess.ChessGame;
-import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.SharedChessGame;
 import com.google.gson.Gson;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
@@ -10,16 +11,24 @@ import io.javalin.websocket.WsCloseContext;
 import io.javalin.websocket.WsMessageContext;
 import model.AuthData;
 import model.GameData;
+import websocket.commands.ConnectCommand;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ErrorMessage;
 import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
 import websocket.messages.NotificationMessage;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class WebSocketHandler {
 
     private static final Gson GSON = new Gson();
     private static final ConnectionManager CONNECTIONS = new ConnectionManager();
+    // games in play, by ID: moves are played on these and stored afterwards, while
+    // connects and syncs read their published snapshots without waiting on a move
+    private static final Map<Integer, SharedChessGame> GAMES = new ConcurrentHashMap<>();
 
     private final DataAccess dao;
 
@@ -43,7 +52,7 @@ public class WebSocketHandler {
 
             switch (command.getCommandType()) {
                 case CONNECT:
-                    handleConnect(ctx, command);
+                    handleConnect(ctx, GSON.fromJson(message, ConnectCommand.class));
                     break;
                 case MAKE_MOVE:
                     handleMakeMove(ctx, message);
@@ -54,6 +63,12 @@ public class WebSocketHandler {
                 case RESIGN:
                     handleResign(ctx, command);
                     break;
+                case SYNC:
+                    handleSync(ctx, command);
+                    break;
+                case CLAIM_DRAW:
+                    handleClaimDraw(ctx, command);
+                    break;
                 default:
                     sendError(ctx, "Error: unknown command");
                     break;
@@ -67,7 +82,7 @@ public class WebSocketHandler {
     public void onClose(WsCloseContext ctx) {
     }
 
-    private void handleConnect(WsMessageContext ctx, UserGameCommand command) {
+    private void handleConnect(WsMessageContext ctx, ConnectCommand command) {
         try {
             AuthData auth = dao.getAuth(command.getAuthToken());
             if (auth == null) {
@@ -84,9 +99,9 @@ public class WebSocketHandler {
                 return;
             }
 
-            CONNECTIONS.add(username, gameID, ctx);
+            CONNECTIONS.add(username, gameID, ctx, command.wantsMoveUpdates());
 
-            LoadGameMessage loadMsg = new LoadGameMessage(gameData.game());
+            LoadGameMessage loadMsg = new LoadGameMessage(currentGame(gameData));
             ctx.send(GSON.toJson(loadMsg));
 
             String role;
@@ -137,7 +152,7 @@ public class WebSocketHandler {
                 return;
             }
 
-            ChessGame game = gameData.game();
+            SharedChessGame game = sharedGame(gameData);
 
             ChessGame.TeamColor playerColor = null;
             if (username.equals(gameData.whiteUsername())) {
@@ -155,24 +170,34 @@ public class WebSocketHandler {
             }
 
             var move = moveCmd.getMove();
-            var validMoves = game.validMoves(move.getStartPosition());
-            if (validMoves == null || !validMoves.contains(move)) {
+            if (move == null) {
                 sendError(ctx, "Error: invalid move");
                 return;
             }
 
-            game.makeMove(move);
+            ChessGame snapshot;
+            try {
+                snapshot = game.makeMove(move, playerColor).game();
+            } catch (InvalidMoveException e) {
+                sendError(ctx, "Error: invalid move");
+                return;
+            }
 
             ChessGame.TeamColor opponent =
                     (playerColor == ChessGame.TeamColor.WHITE)
                             ? ChessGame.TeamColor.BLACK
                             : ChessGame.TeamColor.WHITE;
 
-            boolean gameOver = gameData.gameOver();
-            boolean inCheckmate = game.isInCheckmate(opponent);
-            boolean inStalemate = game.isInStalemate(opponent);
+            ChessGame.GameStatus status = snapshot.status(opponent);
+            // checkmate stands even when a move-count draw falls on the same move
+            ChessGame.DrawReason draw = (status == ChessGame.GameStatus.CHECKMATE) ? null : snapshot.drawReason();
+
+            // threefold repetition and the fifty-move rule only let a player claim the draw
+            boolean automaticDraw = draw != null && draw.isAutomatic();
 
-            if (inCheckmate || inStalemate) {
+            boolean gameOver = gameData.gameOver();
+            if (status == ChessGame.GameStatus.CHECKMATE || status == ChessGame.GameStatus.STALEMATE
+                    || automaticDraw) {
                 gameOver = true;
             }
 
@@ -181,30 +206,43 @@ public class WebSocketHandler {
                     gameData.whiteUsername(),
                     gameData.blackUsername(),
                     gameData.gameName(),
-                    game,
+                    snapshot,
                     gameOver
             );
             dao.updateGame(updatedGame);
+            if (gameOver) {
+                GAMES.remove(gameID);
+            }
 
-            LoadGameMessage loadMsg = new LoadGameMessage(game);
-            CONNECTIONS.broadcast(gameID, GSON.toJson(loadMsg));
+            MoveMessage moveMsg = new MoveMessage(move, snapshot.getPlyNumber(), status);
+            CONNECTIONS.broadcastMove(gameID, () -> GSON.toJson(new LoadGameMessage(snapshot)),
+                    GSON.toJson(moveMsg));
 
             String moveText = username + " moved " +
-                    positionToString(move.getStartPosition()) + " to " +
-                    positionToString(move.getEndPosition());
+                    move.getStartPosition().toCoordinate() + " to " +
+                    move.getEndPosition().toCoordinate();
 
             NotificationMessage note = new NotificationMessage(moveText);
             CONNECTIONS.broadcastExcept(gameID, username, GSON.toJson(note));
 
-            if (inCheckmate) {
+            if (status == ChessGame.GameStatus.CHECKMATE) {
                 CONNECTIONS.broadcast(gameID,
                         GSON.toJson(new NotificationMessage(opponent + " is in checkmate")));
-            } else if (inStalemate) {
+            } else if (status == ChessGame.GameStatus.STALEMATE) {
                 CONNECTIONS.broadcast(gameID,
                         GSON.toJson(new NotificationMessage("Stalemate")));
-            } else if (game.isInCheck(opponent)) {
+            } else if (automaticDraw) {
                 CONNECTIONS.broadcast(gameID,
-                        GSON.toJson(new NotificationMessage(opponent + " is in check")));
+                        GSON.toJson(new NotificationMessage("Draw by " + drawText(draw))));
+            } else {
+                if (status == ChessGame.GameStatus.CHECK) {
+                    CONNECTIONS.broadcast(gameID,
+                            GSON.toJson(new NotificationMessage(opponent + " is in check")));
+                }
+                if (draw != null) {
+                    CONNECTIONS.broadcast(gameID,
+                            GSON.toJson(new NotificationMessage("A draw by " + drawText(draw) + " can be claimed")));
+                }
             }
 
         } catch (Exception e) {
@@ -238,7 +276,7 @@ public class WebSocketHandler {
                         wasWhite ? null : gameData.whiteUsername(),
                         wasBlack ? null : gameData.blackUsername(),
                         gameData.gameName(),
-                        gameData.game(),
+                        currentGame(gameData),
                         gameData.gameOver()
                 );
                 dao.updateGame(updatedGame);
@@ -289,10 +327,11 @@ public class WebSocketHandler {
                     gameData.whiteUsername(),
                     gameData.blackUsername(),
                     gameData.gameName(),
-                    gameData.game(),
+                    currentGame(gameData),
                     true
             );
             dao.updateGame(updatedGame);
+            GAMES.remove(gameID);
 
             NotificationMessage note = new NotificationMessage(username + " resigned the game");
             CONNECTIONS.broadcast(gameID, GSON.toJson(note));
@@ -302,13 +341,116 @@ public class WebSocketHandler {
         }
     }
 
+    /**
+     * Ends the game as a draw when a player claims one the current position allows,
+     * by threefold repetition or the fifty-move rule
+     */
+    private void handleClaimDraw(WsMessageContext ctx, UserGameCommand command) {
+        try {
+            AuthData auth = dao.getAuth(command.getAuthToken());
+            if (auth == null) {
+                sendError(ctx, "Error: unauthorized");
+                return;
+            }
+
+            String username = auth.username();
+            int gameID = command.getGameID();
+
+            GameData gameData = dao.getGame(gameID);
+            if (gameData == null) {
+                sendError(ctx, "Error: game not found");
+                return;
+            }
+
+            if (gameData.gameOver()) {
+                sendError(ctx, "Error: game is already over");
+                return;
+            }
+
+            if (!username.equals(gameData.whiteUsername()) && !username.equals(gameData.blackUsername())) {
+                sendError(ctx, "Error: observers cannot claim a draw");
+                return;
+            }
+
+            ChessGame game = currentGame(gameData);
+            ChessGame.DrawReason draw = game.drawReason();
+            if (draw == null) {
+                sendError(ctx, "Error: no draw can be claimed");
+                return;
+            }
+
+            GameData updatedGame = new GameData(
+                    gameID,
+                    gameData.whiteUsername(),
+                    gameData.blackUsername(),
+                    gameData.gameName(),
+                    game,
+                    true
+            );
+            dao.updateGame(updatedGame);
+            GAMES.remove(gameID);
+
+            NotificationMessage note = new NotificationMessage(username + " claimed a draw by " + drawText(draw));
+            CONNECTIONS.broadcast(gameID, GSON.toJson(note));
+
+        } catch (Exception e) {
+            sendError(ctx, "Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the whole game to one client, which asks for it when its move updates
+     * skip a sequence number.
+     */
+    private void handleSync(WsMessageContext ctx, UserGameCommand command) {
+        try {
+            AuthData auth = dao.getAuth(command.getAuthToken());
+            if (auth == null) {
+                sendError(ctx, "Error: unauthorized");
+                return;
+            }
+
+            GameData gameData = dao.getGame(command.getGameID());
+            if (gameData == null) {
+                sendError(ctx, "Error: game not found");
+                return;
+            }
+
+            ctx.send(GSON.toJson(new LoadGameMessage(currentGame(gameData))));
+
+        } catch (Exception e) {
+            sendError(ctx, "Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the game moves are played on, loaded from the stored game the first
+     * time it is asked for
+     */
+    private static SharedChessGame sharedGame(GameData gameData) {
+        return GAMES.computeIfAbsent(gameData.gameID(), id -> new SharedChessGame(gameData.game()));
+    }
+
+    /**
+     * @return the latest published snapshot of a game in play, or the stored game
+     * when nobody has played on it since the server started or it ended
+     */
+    private static ChessGame currentGame(GameData gameData) {
+        SharedChessGame game = GAMES.get(gameData.gameID());
+        return (game == null) ? gameData.game() : game.snapshot();
+    }
+
     private void sendError(WsMessageContext ctx, String errorText) {
         ctx.send(GSON.toJson(new ErrorMessage(errorText)));
     }
 
-    private String positionToString(ChessPosition pos) {
-        char file = (char) ('a' + pos.getColumn() - 1);
-        int rank = pos.getRow();
-        return "" + file + rank;
+    private String drawText(ChessGame.DrawReason reason) {
+        return switch (reason) {
+            case THREEFOLD_REPETITION -> "threefold repetition";
+            case FIVEFOLD_REPETITION -> "fivefold repetition";
+            case FIFTY_MOVE_RULE -> "the fifty-move rule";
+            case SEVENTY_FIVE_MOVE_RULE -> "the seventy-five-move rule";
+            case INSUFFICIENT_MATERIAL -> "insufficient material";
+        };
     }
 }
\ No newline at end of file
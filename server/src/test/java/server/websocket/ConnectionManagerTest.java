@@ -0,0 +1,126 @@
+package server.websocket;
+
+import io.javalin.Javalin;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionManagerTest {
+
+    private static final int GAME = 7;
+
+    private final ConnectionManager connections = new ConnectionManager();
+    private final List<Session> sessions = new ArrayList<>();
+    private Javalin javalin;
+    private CountDownLatch joined;
+
+    @BeforeEach
+    public void start() {
+        javalin = Javalin.create().ws("/ws", ws -> ws.onMessage(ctx -> {
+            String[] hello = ctx.message().split(" ");
+            connections.add(hello[0], GAME, ctx, hello[1].equals("moves"));
+            joined.countDown();
+        })).start(0);
+    }
+
+    @AfterEach
+    public void stop() throws Exception {
+        for (Session session : sessions) {
+            session.close();
+        }
+        javalin.stop();
+    }
+
+    @Test
+    public void everyoneGetsTheSameText() throws Exception {
+        List<BlockingQueue<String>> inboxes = connect("white full", "black moves", "watcher moves");
+        String message = "{\"message\":\"white moved e2 to e4 ♙\"}";
+
+        connections.broadcast(GAME, message);
+        connections.broadcastExcept(GAME, "white", "second");
+        for (int i = 0; i < inboxes.size(); i++) {
+            assertEquals(message, take(inboxes.get(i)));
+            assertEquals(i == 0 ? null : "second", inboxes.get(i).poll(200, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void movesGoToThoseWhoAskedForThem() throws Exception {
+        List<BlockingQueue<String>> inboxes = connect("white full", "black moves", "watcher moves");
+        int[] loads = new int[1];
+
+        for (int i = 0; i < 3; i++) {
+            connections.broadcastMove(GAME, () -> "game" + loads[0]++, "move");
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals("game" + i, take(inboxes.get(0)));
+            assertEquals("move", take(inboxes.get(1)));
+            assertEquals("move", take(inboxes.get(2)));
+        }
+
+        connections.remove("white", GAME);
+        connections.broadcastMove(GAME, () -> "game" + loads[0]++, "move");
+        assertEquals(3, loads[0]);
+    }
+
+    @Test
+    public void failedSendsDropTheConnection() throws Exception {
+        List<BlockingQueue<String>> inboxes = connect("white full", "black moves");
+        int[] loads = new int[1];
+
+        // nothing removes white here, so it stays until a send to it fails
+        sessions.get(0).close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        int before;
+        do {
+            before = loads[0];
+            connections.broadcastMove(GAME, () -> "game" + loads[0]++, "move");
+            assertEquals("move", take(inboxes.get(1)));
+            Thread.sleep(20);
+        } while (loads[0] > before && System.nanoTime() < deadline);
+        assertEquals(before, loads[0], "white was never dropped");
+    }
+
+    private List<BlockingQueue<String>> connect(String... hellos) throws Exception {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        URI uri = URI.create("ws://localhost:" + javalin.port() + "/ws");
+        joined = new CountDownLatch(hellos.length);
+        List<BlockingQueue<String>> inboxes = new ArrayList<>();
+        for (String hello : hellos) {
+            BlockingQueue<String> inbox = new LinkedBlockingQueue<>();
+            Session session = container.connectToServer(new Endpoint() {
+                @Override
+                public void onOpen(Session session, EndpointConfig config) {
+                    session.addMessageHandler(String.class, inbox::add);
+                }
+            }, ClientEndpointConfig.Builder.create().build(), uri);
+            session.getBasicRemote().sendText(hello);
+            sessions.add(session);
+            inboxes.add(inbox);
+        }
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+        return inboxes;
+    }
+
+    private static String take(BlockingQueue<String> inbox) throws InterruptedException {
+        String message = inbox.poll(5, TimeUnit.SECONDS);
+        assertNotNull(message, "no message arrived");
+        return message;
+    }
+}
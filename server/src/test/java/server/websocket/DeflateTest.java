@@ -0,0 +1,248 @@
+package server.websocket;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import io.javalin.Javalin;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import websocket.DeflateSettings;
+import websocket.messages.LoadGameMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the frames ServerDeflateExtension puts on the wire, read off a plain socket, since
+ * the minimum size hook depends on Jetty internals. End-to-end tests with the client's
+ * extension are in the client module.
+ */
+public class DeflateTest {
+
+    private static final int GAME = 1;
+    private static final Gson GSON = new Gson();
+    private static final byte[] TAIL = {0, 0, (byte) 0xFF, (byte) 0xFF};
+
+    private final ConnectionManager connections = new ConnectionManager();
+    private final CountDownLatch joined = new CountDownLatch(1);
+    private Javalin javalin;
+    private Socket socket;
+    private DataInputStream in;
+    private String answer;
+
+    private record RawFrame(boolean rsv1, byte[] payload) {
+    }
+
+    @AfterEach
+    public void stop() throws Exception {
+        if (socket != null) {
+            socket.close();
+        }
+        if (javalin != null) {
+            javalin.stop();
+        }
+    }
+
+    /**
+     * ServerDeflateExtension relies on Jetty's internal extension declaring these methods
+     * itself, with its flusher passing every compressed frame on through nextOutgoingFrame.
+     * If an upgrade moves or seals them, this fails before the frames on the wire go wrong.
+     */
+    @Test
+    public void jettyStillHasTheHooksItOverrides() throws Exception {
+        Class<?> jetty = PerMessageDeflateExtension.class;
+        assertEquals(jetty, ServerDeflateExtension.class.getSuperclass());
+        assertFalse(Modifier.isFinal(jetty.getModifiers()), jetty + " is final now");
+
+        Method[] hooks = {
+                jetty.getDeclaredMethod("init", ExtensionConfig.class, WebSocketComponents.class),
+                jetty.getDeclaredMethod("sendFrame", Frame.class, Callback.class, boolean.class),
+                jetty.getDeclaredMethod("nextOutgoingFrame", Frame.class, Callback.class, boolean.class),
+        };
+        for (Method hook : hooks) {
+            assertFalse(Modifier.isFinal(hook.getModifiers()), hook + " is final now");
+            assertFalse(Modifier.isPrivate(hook.getModifiers()), hook + " is private now");
+            Method override = ServerDeflateExtension.class.getDeclaredMethod(hook.getName(), hook.getParameterTypes());
+            assertEquals(hook.getReturnType(), override.getReturnType(), hook.toString());
+        }
+    }
+
+    @Test
+    public void sendsShortMessagesUncompressed() throws Exception {
+        start(DeflateSettings.DEFAULT);
+        connect("permessage-deflate");
+        assertTrue(answer.startsWith("permessage-deflate"), answer);
+
+        String note = "{\"message\":\"white moved e2 to e4\"}";
+        String game = GSON.toJson(new LoadGameMessage(new ChessGame()));
+        assertTrue(note.length() < DeflateSettings.DEFAULT.minimumSize());
+        assertTrue(game.length() >= DeflateSettings.DEFAULT.minimumSize());
+
+        connections.broadcast(GAME, note);
+        RawFrame frame = readFrame();
+        assertFalse(frame.rsv1());
+        assertEquals(note, new String(frame.payload(), StandardCharsets.UTF_8));
+
+        connections.broadcast(GAME, game);
+        frame = readFrame();
+        assertTrue(frame.rsv1());
+        assertTrue(frame.payload().length < game.length(), frame.payload().length + " bytes");
+        Inflater inflater = new Inflater(true);
+        assertEquals(game, inflate(inflater, frame.payload()));
+
+        // once the compressed message is out, short ones skip the deflater again
+        connections.broadcast(GAME, note);
+        frame = readFrame();
+        assertFalse(frame.rsv1());
+        assertEquals(note, new String(frame.payload(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void honorsContextTakeoverSettings() throws Exception {
+        start(new DeflateSettings(true, 0, false));
+        connect("permessage-deflate");
+        assertTrue(answer.contains("server_no_context_takeover"), answer);
+        assertTrue(answer.contains("client_no_context_takeover"), answer);
+
+        // without the earlier message to refer back to, a repeat compresses the same way
+        String game = GSON.toJson(new LoadGameMessage(new ChessGame()));
+        connections.broadcast(GAME, game);
+        connections.broadcast(GAME, game);
+        RawFrame first = readFrame();
+        RawFrame second = readFrame();
+        assertTrue(first.rsv1() && second.rsv1());
+        assertArrayEquals(first.payload(), second.payload());
+        assertEquals(game, inflate(new Inflater(true), second.payload()));
+    }
+
+    @Test
+    public void keepsContextByDefault() throws Exception {
+        start(DeflateSettings.DEFAULT);
+        connect("permessage-deflate");
+        assertFalse(answer.contains("no_context_takeover"), answer);
+
+        String game = GSON.toJson(new LoadGameMessage(new ChessGame()));
+        connections.broadcast(GAME, game);
+        connections.broadcast(GAME, game);
+        RawFrame first = readFrame();
+        RawFrame second = readFrame();
+        assertTrue(second.payload().length < first.payload().length / 4,
+                first.payload().length + " then " + second.payload().length + " bytes");
+        Inflater inflater = new Inflater(true);
+        assertEquals(game, inflate(inflater, first.payload()));
+        assertEquals(game, inflate(inflater, second.payload()));
+    }
+
+    @Test
+    public void canBeTurnedOff() throws Exception {
+        start(DeflateSettings.OFF);
+        connect("permessage-deflate");
+        assertNull(answer);
+
+        String game = GSON.toJson(new LoadGameMessage(new ChessGame()));
+        connections.broadcast(GAME, game);
+        RawFrame frame = readFrame();
+        assertFalse(frame.rsv1());
+        assertEquals(game, new String(frame.payload(), StandardCharsets.UTF_8));
+    }
+
+    private void start(DeflateSettings settings) {
+        javalin = Javalin.create(config -> config.jetty.modifyServletContextHandler(
+                handler -> ServerDeflateExtension.install(handler, settings))).ws("/ws", ws -> ws.onMessage(ctx -> {
+                    connections.add(ctx.sessionId(), GAME, ctx);
+                    joined.countDown();
+                })).start(0);
+    }
+
+    /**
+     * Opens the WebSocket by hand, offering the extension, and joins the game
+     */
+    private void connect(String extensions) throws Exception {
+        socket = new Socket("localhost", javalin.port());
+        socket.setSoTimeout(5000);
+        in = new DataInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        String key = Base64.getEncoder().encodeToString("deflate test key".getBytes(StandardCharsets.US_ASCII));
+        out.write(("GET /ws HTTP/1.1\r\n"
+                + "Host: localhost:" + javalin.port() + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "Sec-WebSocket-Extensions: " + extensions + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        String status = readLine();
+        assertTrue(status.startsWith("HTTP/1.1 101"), status);
+        for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+            int colon = line.indexOf(':');
+            if (line.substring(0, colon).equalsIgnoreCase("Sec-WebSocket-Extensions")) {
+                answer = line.substring(colon + 1).trim();
+            }
+        }
+
+        // an uncompressed, masked text frame with a zero mask
+        byte[] join = "join".getBytes(StandardCharsets.UTF_8);
+        out.write(new byte[]{(byte) 0x81, (byte) (0x80 | join.length), 0, 0, 0, 0});
+        out.write(join);
+        out.flush();
+        assertTrue(joined.await(5, TimeUnit.SECONDS));
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("connection closed during the handshake");
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private RawFrame readFrame() throws IOException {
+        int first = in.readUnsignedByte();
+        int second = in.readUnsignedByte();
+        assertTrue((first & 0x80) != 0, "fragmented frame");
+        assertEquals(0x1, first & 0x0F, "not a text frame");
+        long length = second & 0x7F;
+        if (length == 126) {
+            length = in.readUnsignedShort();
+        } else if (length == 127) {
+            length = in.readLong();
+        }
+        byte[] payload = new byte[(int) length];
+        in.readFully(payload);
+        return new RawFrame((first & 0x40) != 0, payload);
+    }
+
+    private static String inflate(Inflater inflater, byte[] payload) throws DataFormatException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (byte[] input : new byte[][]{payload, TAIL}) {
+            inflater.setInput(input);
+            while (!inflater.needsInput()) {
+                out.write(buffer, 0, inflater.inflate(buffer));
+            }
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
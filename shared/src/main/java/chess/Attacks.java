@@ -0,0 +1,236 @@
+package chess;
+
+/**
+ * Precomputed attack sets for every piece type.
+ * <p>
+ * Knights, kings and pawns use a fixed mask per square. Bishops and rooks use
+ * magic bitboards: the blockers that matter for a square are multiplied by a
+ * magic number so the top bits form a perfect index into that square's slice
+ * of a shared attack table. All tables are built once when the class loads.
+ */
+public final class Attacks {
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final Magic[] BISHOP = new Magic[64];
+    private static final Magic[] ROOK = new Magic[64];
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    // fixed seeds per rank so the same magics are found on every run
+    private static final long[] SEEDS = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT[square] = Bitboards.steps(square, ChessPiece.KNIGHT_DIRECTIONS);
+            KING[square] = Bitboards.steps(square, ChessPiece.KING_DIRECTIONS);
+            PAWN[ChessGame.TeamColor.WHITE.ordinal()][square] = Bitboards.steps(square, new int[][]{{1, -1}, {1, 1}});
+            PAWN[ChessGame.TeamColor.BLACK.ordinal()][square] = Bitboards.steps(square, new int[][]{{-1, -1}, {-1, 1}});
+            BISHOP[square] = findMagic(square, ChessPiece.BISHOP_DIRECTIONS);
+            ROOK[square] = findMagic(square, ChessPiece.ROOK_DIRECTIONS);
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b) {
+                    continue;
+                }
+                long bits = Bitboards.bit(a) | Bitboards.bit(b);
+                if ((bishop(a, 0L) & Bitboards.bit(b)) != 0) {
+                    BETWEEN[a][b] = bishop(a, bits) & bishop(b, bits);
+                    LINE[a][b] = (bishop(a, 0L) & bishop(b, 0L)) | bits;
+                } else if ((rook(a, 0L) & Bitboards.bit(b)) != 0) {
+                    BETWEEN[a][b] = rook(a, bits) & rook(b, bits);
+                    LINE[a][b] = (rook(a, 0L) & rook(b, 0L)) | bits;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * @return the squares a pawn of the given color on {@code square} attacks
+     */
+    public static long pawn(ChessGame.TeamColor color, int square) {
+        return PAWN[color.ordinal()][square];
+    }
+
+    public static long bishop(int square, long occupied) {
+        return BISHOP[square].attacks(occupied);
+    }
+
+    public static long rook(int square, long occupied) {
+        return ROOK[square].attacks(occupied);
+    }
+
+    public static long queen(int square, long occupied) {
+        return BISHOP[square].attacks(occupied) | ROOK[square].attacks(occupied);
+    }
+
+    /**
+     * @return the squares strictly between two squares on a shared rank, file or
+     * diagonal, or 0 if they are not aligned
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * @return the whole rank, file or diagonal through both squares, or 0 if they
+     * are not aligned
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * @return the squares a piece of the given type and color attacks from {@code square}
+     */
+    public static long of(ChessPiece.PieceType type, ChessGame.TeamColor color, int square, long occupied) {
+        return switch (type) {
+            case KING -> KING[square];
+            case QUEEN -> queen(square, occupied);
+            case BISHOP -> bishop(square, occupied);
+            case KNIGHT -> KNIGHT[square];
+            case ROOK -> rook(square, occupied);
+            case PAWN -> PAWN[color.ordinal()][square];
+        };
+    }
+
+    /**
+     * @return the pieces of {@code attackerColor} that attack {@code square}, treating
+     * {@code occupied} as the blockers for sliding pieces
+     */
+    public static long attackersTo(ChessBoard board, int square, ChessGame.TeamColor attackerColor, long occupied) {
+        ChessGame.TeamColor defender = (attackerColor == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long queens = board.pieces(attackerColor, ChessPiece.PieceType.QUEEN);
+        return (KNIGHT[square] & board.pieces(attackerColor, ChessPiece.PieceType.KNIGHT))
+                | (KING[square] & board.pieces(attackerColor, ChessPiece.PieceType.KING))
+                | (PAWN[defender.ordinal()][square] & board.pieces(attackerColor, ChessPiece.PieceType.PAWN))
+                | (bishop(square, occupied) & (board.pieces(attackerColor, ChessPiece.PieceType.BISHOP) | queens))
+                | (rook(square, occupied) & (board.pieces(attackerColor, ChessPiece.PieceType.ROOK) | queens));
+    }
+
+    /**
+     * @return every square attacked by a piece of {@code color}, with sliders
+     * blocked by {@code occupied}
+     */
+    public static long attackedBy(ChessBoard board, ChessGame.TeamColor color, long occupied) {
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        long attacks = (color == ChessGame.TeamColor.WHITE)
+                ? ((pawns & ~Bitboards.FILE_A) << 7) | ((pawns & ~Bitboards.FILE_H) << 9)
+                : ((pawns & ~Bitboards.FILE_A) >>> 9) | ((pawns & ~Bitboards.FILE_H) >>> 7);
+
+        long queens = board.pieces(color, ChessPiece.PieceType.QUEEN);
+        long knights = board.pieces(color, ChessPiece.PieceType.KNIGHT);
+        long diagonal = board.pieces(color, ChessPiece.PieceType.BISHOP) | queens;
+        long straight = board.pieces(color, ChessPiece.PieceType.ROOK) | queens;
+        while (knights != 0) {
+            attacks |= KNIGHT[Long.numberOfTrailingZeros(knights)];
+            knights &= knights - 1;
+        }
+        while (diagonal != 0) {
+            attacks |= bishop(Long.numberOfTrailingZeros(diagonal), occupied);
+            diagonal &= diagonal - 1;
+        }
+        while (straight != 0) {
+            attacks |= rook(Long.numberOfTrailingZeros(straight), occupied);
+            straight &= straight - 1;
+        }
+        int king = board.kingSquare(color);
+        return king < 0 ? attacks : attacks | KING[king];
+    }
+
+    /**
+     * @return whether any piece of {@code attackerColor} attacks {@code square}
+     */
+    public static boolean isAttacked(ChessBoard board, int square, ChessGame.TeamColor attackerColor) {
+        return attackersTo(board, square, attackerColor, board.occupancy()) != 0;
+    }
+
+    private static Magic findMagic(int square, int[][] directions) {
+        long mask = relevantBlockers(square, directions);
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+
+        long[] occupancies = new long[size];
+        long[] reference = new long[size];
+        long subset = 0L;
+        for (int i = 0; i < size; i++) { //walk every subset of the mask
+            occupancies[i] = subset;
+            reference[i] = Bitboards.rays(square, subset, directions);
+            subset = (subset - mask) & mask;
+        }
+
+        long[] seed = {SEEDS[square >>> 3]};
+        long[] table = new long[size];
+        int[] epoch = new int[size];
+        int attempt = 0;
+        while (true) {
+            long magic;
+            do {
+                magic = nextRandom(seed) & nextRandom(seed) & nextRandom(seed);
+            } while (Long.bitCount((mask * magic) >>> 56) < 6);
+
+            attempt++;
+            int shift = 64 - bits;
+            boolean ok = true;
+            for (int i = 0; i < size && ok; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shift);
+                if (epoch[index] < attempt) {
+                    epoch[index] = attempt;
+                    table[index] = reference[i];
+                } else if (table[index] != reference[i]) {
+                    ok = false;
+                }
+            }
+            if (ok) {
+                return new Magic(mask, magic, shift, table);
+            }
+        }
+    }
+
+    // the edge squares never change a ray's reach, so they are left out of the mask
+    private static long relevantBlockers(int square, int[][] directions) {
+        long mask = 0L;
+        int row = Bitboards.row(square);
+        int col = Bitboards.column(square);
+        for (int[] direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            while (Bitboards.isValid(r + direction[0], c + direction[1])) {
+                mask |= Bitboards.bit(Bitboards.square(r, c));
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    // xorshift64*, advancing the state held in seed[0]
+    private static long nextRandom(long[] seed) {
+        seed[0] ^= seed[0] >>> 12;
+        seed[0] ^= seed[0] << 25;
+        seed[0] ^= seed[0] >>> 27;
+        return seed[0] * 2685821657736338717L;
+    }
+
+    private record Magic(long mask, long magic, int shift, long[] table) {
+        long attacks(long occupied) {
+            return table[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+}
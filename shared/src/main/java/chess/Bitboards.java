@@ -0,0 +1,89 @@
+package chess;
+
+/**
+ * Helpers for working with 64-bit square sets.
+ * <p>
+ * Squares are numbered 0..63 starting at a1 (row 1, column 1) and moving
+ * across each row, so square = (row - 1) * 8 + (column - 1).
+ */
+public final class Bitboards {
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+    public static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+    public static final long DARK_SQUARES = ~LIGHT_SQUARES;
+
+    private Bitboards() {
+    }
+
+    public static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    public static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    public static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    public static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    public static ChessPosition position(int square) {
+        return ChessPosition.of(square);
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static boolean isValid(int row, int col) {
+        return row >= 1 && row <= 8 && col >= 1 && col <= 8;
+    }
+
+    /**
+     * @return the squares reachable from {@code square} along each direction,
+     * stopping at (and including) the first occupied square
+     */
+    public static long rays(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        int row = row(square);
+        int col = column(square);
+        for (int[] direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            while (isValid(r, c)) {
+                long target = bit(square(r, c));
+                attacks |= target;
+                if ((occupied & target) != 0) {
+                    break;
+                }
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * @return the squares one step away from {@code square} in each direction
+     */
+    public static long steps(int square, int[][] directions) {
+        long attacks = 0L;
+        int row = row(square);
+        int col = column(square);
+        for (int[] direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            if (isValid(r, c)) {
+                attacks |= bit(square(r, c));
+            }
+        }
+        return attacks;
+    }
+}
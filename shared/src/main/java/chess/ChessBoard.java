@@ -1,7 +1,8 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
@@ -9,12 +10,66 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJson.BoardAdapter.class)
 public class ChessBoard {
 
-    ChessPiece[][] squares = new ChessPiece[8][8];
+    // written only through setPiece, which keeps the indexes below in step. The
+    // arrays are set up by the constructors, so a copy allocates only its own.
+    private ChessPiece[][] squares;
+
+    // one occupancy word per color and piece type, indexed by pieceIndex()
+    private transient long[] pieceBits;
+    private transient long[] colorBits;
+    private transient long occupied;
+    // piece counts per pieceIndex(), material per color and the shared game phase
+    private transient int[] counts;
+    private transient int[] material;
+    private transient int phase;
+    // Zobrist key of the pieces alone, see Zobrist, and of the pawns alone
+    private transient long pieceKey;
+    private transient long pawnKey;
+    // running PieceSquareTables sums from white's point of view, packed like PieceSquareTables.packed()
+    private transient int squareScore;
+    // squares attacked by each color, valid for the colors whose bit is set in
+    // attackMapsValid; allocated when first asked for
+    private transient long[] attackMaps;
+    private transient int attackMapsValid;
+    // bumped on every change so callers can tell whether cached results still hold
+    private transient int version;
+    // one bit per row array that another board may also hold; such a row is copied before it is written
+    private transient int sharedRows;
+    // set on snapshots, which refuse every change
+    private transient boolean frozen;
+
+    // centipawn value and game-phase weight of each PieceType, by ordinal
+    private static final int[] MATERIAL_VALUES = {0, 900, 330, 320, 500, 100};
+    private static final int[] PHASE_WEIGHTS = {0, 4, 1, 1, 2, 0};
+    private static final int PAWN = ChessPiece.PieceType.PAWN.ordinal();
+
+    /**
+     * Phase of a board with every non-pawn piece of the starting position
+     */
+    public static final int FULL_PHASE = 24;
 
     public ChessBoard() {
-        
+        squares = new ChessPiece[8][8];
+        pieceBits = new long[12];
+        colorBits = new long[2];
+        counts = new int[12];
+        material = new int[2];
+    }
+
+    private ChessBoard(ChessBoard source) {
+        squares = source.squares.clone();
+        pieceBits = source.pieceBits.clone();
+        colorBits = source.colorBits.clone();
+        occupied = source.occupied;
+        counts = source.counts.clone();
+        material = source.material.clone();
+        phase = source.phase;
+        pieceKey = source.pieceKey;
+        pawnKey = source.pawnKey;
+        squareScore = source.squareScore;
     }
 
     /**
@@ -24,7 +79,7 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow()-1][position.getColumn()-1] = piece;
+        setPiece(Bitboards.square(position), piece);
     }
 
     /**
@@ -38,18 +93,278 @@ public class ChessBoard {
         return squares[position.getRow()-1][position.getColumn()-1];
     }
 
+    /**
+     * @return the piece on the given square index, or null if it is empty
+     */
+    public ChessPiece pieceAt(int square) {
+        return squares[square >>> 3][square & 7];
+    }
+
+    /**
+     * Places a piece (or null to clear) on the given square index, keeping the
+     * bitboards in step with the squares array
+     */
+    public void setPiece(int square, ChessPiece piece) {
+        checkNotFrozen();
+        int row = square >>> 3;
+        if ((sharedRows & (1 << row)) != 0) {
+            squares[row] = squares[row].clone();
+            sharedRows &= ~(1 << row);
+        }
+        ChessPiece old = squares[row][square & 7];
+        long bit = Bitboards.bit(square);
+        version++;
+        attackMapsValid = 0;
+        if (old != null) {
+            remove(old, bit);
+        }
+        squares[row][square & 7] = piece;
+        if (piece != null) {
+            place(piece, bit);
+        }
+    }
+
+    private void place(ChessPiece piece, long bit) {
+        int color = piece.getTeamColor().ordinal();
+        int type = piece.getPieceType().ordinal();
+        pieceBits[color * 6 + type] |= bit;
+        colorBits[color] |= bit;
+        occupied |= bit;
+        counts[color * 6 + type]++;
+        material[color] += MATERIAL_VALUES[type];
+        phase += PHASE_WEIGHTS[type];
+        int square = Long.numberOfTrailingZeros(bit);
+        long key = Zobrist.piece(color * 6 + type, square);
+        pieceKey ^= key;
+        if (type == PAWN) {
+            pawnKey ^= key;
+        }
+        squareScore += PieceSquareTables.packed(color * 6 + type, square);
+    }
+
+    private void remove(ChessPiece piece, long bit) {
+        int color = piece.getTeamColor().ordinal();
+        int type = piece.getPieceType().ordinal();
+        pieceBits[color * 6 + type] &= ~bit;
+        colorBits[color] &= ~bit;
+        occupied &= ~bit;
+        counts[color * 6 + type]--;
+        material[color] -= MATERIAL_VALUES[type];
+        phase -= PHASE_WEIGHTS[type];
+        int square = Long.numberOfTrailingZeros(bit);
+        long key = Zobrist.piece(color * 6 + type, square);
+        pieceKey ^= key;
+        if (type == PAWN) {
+            pawnKey ^= key;
+        }
+        squareScore -= PieceSquareTables.packed(color * 6 + type, square);
+    }
+
+    /**
+     * @return the squares holding pieces of the given color and type
+     */
+    public long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBits[pieceIndex(color, type)];
+    }
+
+    /**
+     * @return the squares holding pieces of the given color
+     */
+    public long occupancy(ChessGame.TeamColor color) {
+        return colorBits[color.ordinal()];
+    }
+
+    /**
+     * @return the squares holding any piece
+     */
+    public long occupancy() {
+        return occupied;
+    }
+
+    /**
+     * @return a counter that changes whenever a piece is placed or removed
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * @return the square index of the given color's king, or -1 if it has none
+     */
+    public int kingSquare(ChessGame.TeamColor color) {
+        long king = pieces(color, ChessPiece.PieceType.KING);
+        return king == 0 ? -1 : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * @return every square a piece of the given color attacks or defends. The
+     * map is built from the bitboards the first time it is asked for after a
+     * change and then kept until the next one.
+     */
+    public long attackedSquares(ChessGame.TeamColor color) {
+        int bit = 1 << color.ordinal();
+        if ((attackMapsValid & bit) == 0) {
+            if (attackMaps == null) {
+                attackMaps = new long[2];
+            }
+            attackMaps[color.ordinal()] = Attacks.attackedBy(this, color, occupied);
+            attackMapsValid |= bit;
+        }
+        return attackMaps[color.ordinal()];
+    }
+
+    /**
+     * @return how many pieces of the given color attack the square index
+     */
+    public int attackerCount(ChessGame.TeamColor color, int square) {
+        return Long.bitCount(Attacks.attackersTo(this, square, color, occupancy()));
+    }
+
+    /**
+     * @return how many pieces of the given color and type are on the board
+     */
+    public int pieceCount(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return counts[pieceIndex(color, type)];
+    }
+
+    /**
+     * @return the total centipawn value of the given color's pieces, kings excluded
+     */
+    public int material(ChessGame.TeamColor color) {
+        return material[color.ordinal()];
+    }
+
+    /**
+     * @return the game phase from the non-pawn pieces left, {@link #FULL_PHASE}
+     * at the start and 0 with only kings and pawns. Promotions can push it higher.
+     */
+    public int phase() {
+        return phase;
+    }
+
+    /**
+     * @return whether neither side has enough material left to ever checkmate:
+     * at most one minor piece on the board, or only bishops that all stand on
+     * squares of one color
+     */
+    public boolean hasInsufficientMaterial() {
+        for (int color = 0; color < 2; color++) {
+            int base = color * 6;
+            if (counts[base + ChessPiece.PieceType.PAWN.ordinal()] != 0
+                    || counts[base + ChessPiece.PieceType.ROOK.ordinal()] != 0
+                    || counts[base + ChessPiece.PieceType.QUEEN.ordinal()] != 0) {
+                return false;
+            }
+        }
+        int bishop = ChessPiece.PieceType.BISHOP.ordinal();
+        int knight = ChessPiece.PieceType.KNIGHT.ordinal();
+        int knights = counts[knight] + counts[6 + knight];
+        int minors = knights + counts[bishop] + counts[6 + bishop];
+        if (minors <= 1) {
+            return true;
+        }
+        long bishops = pieceBits[bishop] | pieceBits[6 + bishop];
+        return knights == 0 && ((bishops & Bitboards.LIGHT_SQUARES) == 0 || (bishops & Bitboards.DARK_SQUARES) == 0);
+    }
+
+    /**
+     * @return the Zobrist key of the pieces on the board, kept up to date as
+     * pieces are placed and removed
+     */
+    public long pieceKey() {
+        return pieceKey;
+    }
+
+    /**
+     * @return the Zobrist key of the pawns alone, for caching pawn structure
+     */
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * @return the sum of the middlegame {@link PieceSquareTables} values of every
+     * piece, from white's point of view
+     */
+    public int midgameScore() {
+        return (squareScore + 0x8000) >> 16;
+    }
+
+    /**
+     * @return the sum of the endgame {@link PieceSquareTables} values of every
+     * piece, from white's point of view
+     */
+    public int endgameScore() {
+        return (short) squareScore;
+    }
+
+    /**
+     * @return a board with the same pieces that can be changed independently.
+     * The two boards share their row arrays until one of them writes to a row,
+     * which then gets its own copy of that row.
+     */
+    public ChessBoard copy() {
+        ChessBoard copy = new ChessBoard(this);
+        copy.sharedRows = 0xFF;
+        if (!frozen) {
+            sharedRows = 0xFF;
+        }
+        return copy;
+    }
+
+    /**
+     * @return an unchangeable board with the same pieces, sharing its rows with
+     * this one. Every query is answered ahead of time or without writing, so a
+     * snapshot can be read from any number of threads once safely published.
+     */
+    public ChessBoard snapshot() {
+        if (frozen) {
+            return this;
+        }
+        ChessBoard snapshot = copy();
+        snapshot.attackedSquares(ChessGame.TeamColor.WHITE);
+        snapshot.attackedSquares(ChessGame.TeamColor.BLACK);
+        snapshot.frozen = true;
+        return snapshot;
+    }
+
+    /**
+     * @return whether this board is a snapshot that cannot be changed
+     */
+    public boolean isSnapshot() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("board snapshots cannot be changed");
+        }
+    }
+
+    static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    /**
+     * @return whether the two boards hold the same array for the given row, for
+     * tests of the row sharing between copies
+     */
+    boolean sharesRow(ChessBoard other, int row) {
+        return squares[row] == other.squares[row];
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(squares, that.squares);
+        return pieceKey == that.pieceKey && Arrays.equals(pieceBits, that.pieceBits);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(pieceKey);
     }
 
     /**
@@ -61,11 +376,25 @@ public class ChessBoard {
                 ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.QUEEN,
                 ChessPiece.PieceType.KING, ChessPiece.PieceType.BISHOP,
                 ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.ROOK};
+        checkNotFrozen();
+        squares = new ChessPiece[8][8];
+        sharedRows = 0;
+        Arrays.fill(pieceBits, 0L);
+        Arrays.fill(colorBits, 0L);
+        occupied = 0L;
+        Arrays.fill(counts, 0);
+        Arrays.fill(material, 0);
+        phase = 0;
+        pieceKey = 0L;
+        pawnKey = 0L;
+        squareScore = 0;
+        version++;
+        attackMapsValid = 0;
         for (int i = 1; i <= 8; i++){
-            addPiece(new ChessPosition(2, i), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(7, i), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(1, i), new ChessPiece(ChessGame.TeamColor.WHITE, backRow[i-1]));
-            addPiece(new ChessPosition(8, i), new ChessPiece(ChessGame.TeamColor.BLACK, backRow[i-1]));
+            addPiece(ChessPosition.of(2, i), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, i), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(1, i), ChessPiece.of(ChessGame.TeamColor.WHITE, backRow[i-1]));
+            addPiece(ChessPosition.of(8, i), ChessPiece.of(ChessGame.TeamColor.BLACK, backRow[i-1]));
         }
     }
 }
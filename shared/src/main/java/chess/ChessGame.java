@@ -1,10 +1,13 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
 
+@JsonAdapter(ChessJson.GameAdapter.class)
 public class ChessGame {
     private TeamColor teamTurn;
     private ChessBoard board;
@@ -12,6 +15,47 @@ public class ChessGame {
     private boolean whiteARookMoved, whiteHRookMoved;
     private boolean blackARookMoved, blackHRookMoved;
     private ChessPosition enPassantTarget;
+    // plies since the last capture or pawn move, and the move number black's next move ends
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    // position keys of earlier plies, null until the first move; those from historyStart
+    // on, played since the last capture or pawn move, are the ones the current position can repeat
+    private long[] keyHistory;
+    private int historyStart, historySize;
+    // keys dropped from the front of keyHistory so far; historyBase + i numbers entry i
+    // for the rest of the game, which is how historyHeads and historyChain refer to it
+    private transient int historyBase;
+    // a small hash index over keyHistory, so repetitions are counted without a scan:
+    // per slot the number + 1 of the newest entry whose key falls in it, and per
+    // entry the number + 1 of the one before it in the same slot, 0 for none
+    private transient int[] historyHeads;
+    private transient int[] historyChain;
+    // keyHistory and its index are also held by a snapshot and must be copied before they are written
+    private transient boolean historyShared;
+    // set on snapshots, which refuse every change
+    private transient boolean frozen;
+
+    // undo stack for doMove/undoMove, reused across calls. This and the caches below
+    // are only allocated once a mutable game first needs them, so snapshots and copies
+    // carry none of it.
+    private transient int undoDepth;
+    private transient int[] undoInfo;
+    private transient ChessPiece[] undoMoved;
+    private transient ChessPiece[] undoCaptured;
+    private transient ChessPosition[] undoEnPassant;
+    private transient int[] undoHalfmove;
+    private transient int[] undoHistoryStart;
+    private transient MoveList scratch;
+
+    // status and legal moves per team, valid while the board and stateVersion match statusStamp
+    private transient int stateVersion;
+    private transient GameStatus[] statusCache;
+    private transient MoveList[] moveCache;
+    private transient boolean[] moveCacheValid;
+    private transient ChessBoard statusBoard;
+    private transient long statusStamp;
+
+    private static final int HISTORY_SLOTS = 256;
 
     public ChessGame() {
         teamTurn = TeamColor.WHITE;
@@ -21,6 +65,26 @@ public class ChessGame {
         whiteARookMoved = whiteHRookMoved = false;
         blackARookMoved = blackHRookMoved = false;
         enPassantTarget = null;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+    }
+
+    private ChessGame(ChessBoard board) {
+        this.teamTurn = TeamColor.WHITE;
+        this.board = board;
+        this.fullmoveNumber = 1;
+    }
+
+    private ChessGame(ChessGame source, ChessBoard board) {
+        this.teamTurn = source.teamTurn;
+        this.board = board;
+        setCastlingFlags(source.castlingFlags());
+        this.enPassantTarget = source.enPassantTarget;
+        this.halfmoveClock = source.halfmoveClock;
+        this.fullmoveNumber = source.fullmoveNumber;
+        this.historyStart = source.historyStart;
+        this.historySize = source.historySize;
+        this.historyBase = source.historyBase;
     }
 
     public TeamColor getTeamTurn() {
@@ -28,7 +92,10 @@ public class ChessGame {
     }
 
     public void setTeamTurn(TeamColor team) {
+        checkNotFrozen();
         teamTurn = team;
+        clearHistory();
+        stateVersion++;
     }
 
     public enum TeamColor {
@@ -36,45 +103,109 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * Where a team stands when it is asked to move
+     */
+    public enum GameStatus {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE
+    }
+
+    /**
+     * Why a game is drawn. Claimable draws end the game only when a player asks;
+     * automatic ones end it regardless.
+     */
+    public enum DrawReason {
+        THREEFOLD_REPETITION(false),
+        FIFTY_MOVE_RULE(false),
+        FIVEFOLD_REPETITION(true),
+        SEVENTY_FIVE_MOVE_RULE(true),
+        INSUFFICIENT_MATERIAL(true);
+
+        private final boolean automatic;
+
+        DrawReason(boolean automatic) {
+            this.automatic = automatic;
+        }
+
+        public boolean isAutomatic() {
+            return automatic;
+        }
+    }
+
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
         ChessPiece piece = board.getPiece(startPosition);
         if (piece == null) {
             return null;
         }
 
-        List<ChessMove> candidates = new ArrayList<>(piece.pieceMoves(board, startPosition));
-
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            addEnPassantMove(candidates, startPosition, piece.getTeamColor());
+        int from = Bitboards.square(startPosition);
+        MoveList legal = legalMoves(piece.getTeamColor());
+        Collection<ChessMove> moves = new ArrayList<>();
+        for (int i = 0; i < legal.size(); i++) {
+            if (MoveList.from(legal.get(i)) == from) {
+                moves.add(MoveList.toChessMove(legal.get(i)));
+            }
         }
 
-        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
-            addCastlingMoves(candidates, startPosition, piece.getTeamColor());
+        if (board.kingSquare(piece.getTeamColor()) < 0 && !moves.isEmpty()) {
+            return null;
         }
+        return moves;
+    }
 
-        Collection<ChessMove> legalMoves = new ArrayList<>();
-
-        for (ChessMove move : candidates) {
-            ChessBoard copy = copyBoard(board);
-            applyMoveWithSpecialRules(copy, move);
-
-            ChessPosition kingPosition = findKing(copy, piece.getTeamColor());
-            if (kingPosition == null) {
-                return null;
-            }
+    /**
+     * @return whether {@code move} is legal for the piece it starts from
+     */
+    public boolean isLegal(ChessMove move) {
+        ChessPiece piece = board.getPiece(move.getStartPosition());
+        return piece != null && legalMoves(piece.getTeamColor()).contains(MoveList.pack(move));
+    }
 
-            TeamColor enemy = opposite(piece.getTeamColor());
-            boolean leavesKingInCheck = isSquareAttackedBy(copy, kingPosition, enemy);
+    /**
+     * @return every legal move of the team in the current position, generated
+     * once and kept until the game or its board changes. Callers must not
+     * change the list.
+     */
+    MoveList legalMoves(TeamColor teamColor) {
+        if (frozen) {
+            MoveList moves = new MoveList();
+            generateMoves(teamColor, moves);
+            return moves;
+        }
+        checkStamp();
+        MoveList moves = moveCache[teamColor.ordinal()];
+        if (!moveCacheValid[teamColor.ordinal()]) {
+            moves.clear();
+            generateMoves(teamColor, moves);
+            moveCacheValid[teamColor.ordinal()] = true;
+        }
+        return moves;
+    }
 
-            if (!leavesKingInCheck) {
-                legalMoves.add(move);
-            }
+    /**
+     * Adds the legal moves of the piece on {@code startPosition} to {@code moves}.
+     * A side with no king on the board is not restricted by check.
+     */
+    public void generateMoves(ChessPosition startPosition, MoveList moves) {
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece == null) {
+            return;
         }
+        new MoveGenerator(this, piece.getTeamColor()).generate(Bitboards.square(startPosition), moves);
+    }
 
-        return legalMoves;
+    /**
+     * Adds every legal move of the given team to {@code moves}
+     */
+    public void generateMoves(TeamColor teamColor, MoveList moves) {
+        new MoveGenerator(this, teamColor).generate(moves);
     }
 
     public void makeMove(ChessMove move) throws InvalidMoveException {
+        checkNotFrozen();
         if (move == null) {
             throw new InvalidMoveException("null move");
         }
@@ -90,395 +221,804 @@ public class ChessGame {
             throw new InvalidMoveException("wrong turn");
         }
 
-        Collection<ChessMove> legal = validMoves(start);
-        boolean ok = false;
-
-        for (ChessMove m : legal) {
-            if (m.equals(move)) {
-                ok = true;
-                break;
-            }
-        }
-
-        if (!ok) {
+        if (!legalMoves(teamTurn).contains(MoveList.pack(move))) {
             throw new InvalidMoveException("illegal");
         }
 
-        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
-            if (piece.getTeamColor() == TeamColor.WHITE) {
-                whiteKingMoved = true;
-            } else {
-                blackKingMoved = true;
-            }
-        } else if (piece.getPieceType() == ChessPiece.PieceType.ROOK) {
-            if (piece.getTeamColor() == TeamColor.WHITE) {
-                if (start.getRow() == 1 && start.getColumn() == 1) {
-                    whiteARookMoved = true;
-                }
-                if (start.getRow() == 1 && start.getColumn() == 8) {
-                    whiteHRookMoved = true;
-                }
-            } else {
-                if (start.getRow() == 8 && start.getColumn() == 1) {
-                    blackARookMoved = true;
-                }
-                if (start.getRow() == 8 && start.getColumn() == 8) {
-                    blackHRookMoved = true;
-                }
-            }
-        }
-
-        ChessPosition nextEnPassant = null;
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            int sr = start.getRow();
-            int er = move.getEndPosition().getRow();
-            if (Math.abs(er - sr) == 2) {
-                int mid = (sr + er) / 2;
-                nextEnPassant = new ChessPosition(mid, start.getColumn());
-            }
-        }
-
-        applyMoveWithSpecialRules(board, move);
-        enPassantTarget = nextEnPassant;
-        teamTurn = opposite(teamTurn);
+        doMove(move);
+        // a played move is never taken back, so drop its undo entry and the
+        // history that can no longer repeat
+        undoDepth = 0;
+        undoMoved[0] = undoCaptured[0] = null;
+        compactHistory();
+        stateVersion++;
     }
 
     private TeamColor opposite(TeamColor t) {
         return (t == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
     }
 
-    private ChessBoard copyBoard(ChessBoard original) {
-        ChessBoard copy = new ChessBoard();
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                copy.addPiece(pos, original.getPiece(pos));
-            }
+    /**
+     * @return whether neither the king nor the rook on the given side has moved
+     * from its home square
+     */
+    boolean castlingAllowed(TeamColor color, boolean kingside) {
+        if (color == TeamColor.WHITE) {
+            return !whiteKingMoved && !(kingside ? whiteHRookMoved : whiteARookMoved);
         }
-        return copy;
+        return !blackKingMoved && !(kingside ? blackHRookMoved : blackARookMoved);
     }
 
-    private ChessPosition findKing(ChessBoard b, TeamColor color) {
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece piece = b.getPiece(pos);
+    ChessPosition getEnPassantTarget() {
+        return enPassantTarget;
+    }
 
-                if (piece != null
-                        && piece.getTeamColor() == color
-                        && piece.getPieceType() == ChessPiece.PieceType.KING) {
-                    return pos;
-                }
-            }
+    /**
+     * @return the castling rights still open, as a combination of the
+     * {@link Zobrist} right flags. A right is open while neither the king nor
+     * that rook has moved and both still stand on their home squares.
+     */
+    public int castlingRights() {
+        int rights = 0;
+        if (hasCastlingPieces(TeamColor.WHITE, true)) {
+            rights |= Zobrist.WHITE_KINGSIDE;
         }
-        return null;
+        if (hasCastlingPieces(TeamColor.WHITE, false)) {
+            rights |= Zobrist.WHITE_QUEENSIDE;
+        }
+        if (hasCastlingPieces(TeamColor.BLACK, true)) {
+            rights |= Zobrist.BLACK_KINGSIDE;
+        }
+        if (hasCastlingPieces(TeamColor.BLACK, false)) {
+            rights |= Zobrist.BLACK_QUEENSIDE;
+        }
+        return rights;
     }
 
-    private boolean isSquareAttackedBy(ChessBoard b, ChessPosition square, TeamColor attackerColor) {
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition from = new ChessPosition(r, c);
-                ChessPiece piece = b.getPiece(from);
-
-                if (piece == null || piece.getTeamColor() != attackerColor) {
-                    continue;
-                }
+    private boolean hasCastlingPieces(TeamColor color, boolean kingside) {
+        int row = (color == TeamColor.WHITE) ? 1 : 8;
+        return castlingAllowed(color, kingside)
+                && (board.pieces(color, ChessPiece.PieceType.KING) & Bitboards.bit(Bitboards.square(row, 5))) != 0
+                && (board.pieces(color, ChessPiece.PieceType.ROOK)
+                        & Bitboards.bit(Bitboards.square(row, kingside ? 8 : 1))) != 0;
+    }
 
-                if (attacksSquare(b, from, piece, square, attackerColor)) {
-                    return true;
-                }
-            }
+    /**
+     * @return the column of the en passant target if a pawn of the team to move
+     * could capture there, otherwise 0
+     */
+    public int enPassantColumn() {
+        if (enPassantTarget == null) {
+            return 0;
         }
-        return false;
+        long capturers = Attacks.pawn(opposite(teamTurn), Bitboards.square(enPassantTarget))
+                & board.pieces(teamTurn, ChessPiece.PieceType.PAWN);
+        return capturers == 0 ? 0 : enPassantTarget.getColumn();
     }
 
-    private boolean attacksSquare(ChessBoard b, ChessPosition from, ChessPiece piece,
-                                  ChessPosition target, TeamColor attackerColor) {
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            return pawnAttacksSquare(from, target, attackerColor);
+    /**
+     * @return a 64-bit Zobrist key of the full game state: pieces, team to move,
+     * castling rights and en passant column. The piece part is maintained by the
+     * board as moves are made, so this costs a few lookups. Keys are stable
+     * across JVM runs and serialization.
+     */
+    public long positionKey() {
+        long key = board.pieceKey() ^ Zobrist.castling(castlingRights());
+        if (teamTurn == TeamColor.BLACK) {
+            key ^= Zobrist.blackToMove();
         }
-
-        return nonPawnAttacksSquare(b, from, piece, target);
+        int column = enPassantColumn();
+        if (column != 0) {
+            key ^= Zobrist.enPassant(column);
+        }
+        return key;
     }
 
-    private boolean pawnAttacksSquare(ChessPosition from, ChessPosition target, TeamColor attackerColor) {
-        int dir = (attackerColor == TeamColor.WHITE) ? 1 : -1;
-        int attackRow = from.getRow() + dir;
+    /**
+     * Applies a move to the live board in place, pushing everything needed to
+     * take it back onto the undo stack. Handles castling, en passant and
+     * promotion, and updates the castling flags, en passant target and turn.
+     * The move is assumed to be at least pseudo-legal.
+     */
+    private void doMove(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        int from = Bitboards.square(start);
+        int to = Bitboards.square(end);
+        ChessPiece moving = board.pieceAt(from);
 
-        if (attackRow < 1 || attackRow > 8) {
-            return false;
+        int captureSquare = to;
+        boolean isEnPassant = moving.getPieceType() == ChessPiece.PieceType.PAWN
+                && enPassantTarget != null
+                && end.equals(enPassantTarget)
+                && board.pieceAt(to) == null
+                && start.getColumn() != end.getColumn();
+        if (isEnPassant) {
+            captureSquare = (moving.getTeamColor() == TeamColor.WHITE) ? to - 8 : to + 8;
         }
 
-        ChessPosition leftAttack = new ChessPosition(attackRow, from.getColumn() - 1);
-        ChessPosition rightAttack = new ChessPosition(attackRow, from.getColumn() + 1);
+        ChessPiece captured = board.pieceAt(captureSquare);
+        pushUndo(from, to, captureSquare, moving, captured);
+        pushHistory(positionKey());
 
-        return (isValidBoardPosition(leftAttack) && leftAttack.equals(target))
-                || (isValidBoardPosition(rightAttack) && rightAttack.equals(target));
-    }
+        board.setPiece(captureSquare, null);
+        board.setPiece(from, null);
+        if (move.getPromotionPiece() != null) {
+            board.setPiece(to, ChessPiece.of(moving.getTeamColor(), move.getPromotionPiece()));
+        } else {
+            board.setPiece(to, moving);
+        }
 
-    private boolean nonPawnAttacksSquare(ChessBoard b, ChessPosition from, ChessPiece piece,
-                                         ChessPosition target) {
-        for (ChessMove move : piece.pieceMoves(b, from)) {
-            if (target.equals(move.getEndPosition())) {
-                return true;
-            }
+        if (isCastle(moving, from, to)) {
+            int rookFrom = castleRookFrom(from, to);
+            int rookTo = castleRookTo(from, to);
+            board.setPiece(rookTo, board.pieceAt(rookFrom));
+            board.setPiece(rookFrom, null);
         }
-        return false;
-    }
 
-    private boolean isValidBoardPosition(ChessPosition position) {
-        return position.getRow() >= 1 && position.getRow() <= 8
-                && position.getColumn() >= 1 && position.getColumn() <= 8;
-    }
+        updateCastlingFlags(moving, start);
 
-    private void addEnPassantMove(List<ChessMove> moves, ChessPosition pawnPos, TeamColor pawnColor) {
-        if (enPassantTarget == null) {
-            return;
+        enPassantTarget = null;
+        if (moving.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(end.getRow() - start.getRow()) == 2) {
+            enPassantTarget = ChessPosition.of((start.getRow() + end.getRow()) / 2, start.getColumn());
+        }
+        if (moving.getPieceType() == ChessPiece.PieceType.PAWN || captured != null) {
+            halfmoveClock = 0;
+            historyStart = historySize;
+        } else {
+            halfmoveClock++;
         }
+        if (moving.getTeamColor() == TeamColor.BLACK) {
+            fullmoveNumber++;
+        }
+        teamTurn = opposite(teamTurn);
+    }
 
-        int dir = (pawnColor == TeamColor.WHITE) ? 1 : -1;
+    /**
+     * Plays a packed {@link MoveList} move without checking it. Meant for search
+     * code that only plays moves from {@link #generateMoves(TeamColor, MoveList)}
+     * and takes each one back with {@link #undoMove()}.
+     */
+    public void doMove(int move) {
+        checkNotFrozen();
+        doMove(MoveList.toChessMove(move));
+    }
 
-        if (enPassantTarget.getRow() != pawnPos.getRow() + dir) {
-            return;
+    /**
+     * Restores the position from before the most recent {@link #doMove(int)}.
+     * Moves played with makeMove cannot be taken back.
+     */
+    public void undoMove() {
+        if (undoDepth == 0) {
+            throw new IllegalStateException("no move to undo");
         }
-
-        if (Math.abs(enPassantTarget.getColumn() - pawnPos.getColumn()) != 1) {
-            return;
+        undoDepth--;
+        int info = undoInfo[undoDepth];
+        int from = info & 63;
+        int to = (info >>> 6) & 63;
+        int captureSquare = (info >>> 12) & 63;
+        ChessPiece moving = undoMoved[undoDepth];
+
+        if (isCastle(moving, from, to)) {
+            int rookFrom = castleRookFrom(from, to);
+            int rookTo = castleRookTo(from, to);
+            board.setPiece(rookFrom, board.pieceAt(rookTo));
+            board.setPiece(rookTo, null);
         }
 
-        ChessPosition adjacent = new ChessPosition(pawnPos.getRow(), enPassantTarget.getColumn());
-        ChessPiece adj = board.getPiece(adjacent);
-
-        if (adj == null) {
-            return;
+        board.setPiece(to, null);
+        board.setPiece(captureSquare, undoCaptured[undoDepth]);
+        board.setPiece(from, moving);
+
+        setCastlingFlags(info >>> 18);
+        enPassantTarget = undoEnPassant[undoDepth];
+        halfmoveClock = undoHalfmove[undoDepth];
+        historyStart = undoHistoryStart[undoDepth];
+        historySize--;
+        if (historyShared) {
+            unshareHistory(keyHistory.length);
         }
+        historyHeads[slot(keyHistory[historySize])] = historyChain[historySize];
+        if (moving.getTeamColor() == TeamColor.BLACK) {
+            fullmoveNumber--;
+        }
+        undoCaptured[undoDepth] = null;
+        undoMoved[undoDepth] = null;
+        teamTurn = opposite(teamTurn);
+    }
 
-        if (adj.getPieceType() != ChessPiece.PieceType.PAWN) {
-            return;
+    private void pushUndo(int from, int to, int captureSquare, ChessPiece moving, ChessPiece captured) {
+        if (undoInfo == null) {
+            undoInfo = new int[16];
+            undoMoved = new ChessPiece[16];
+            undoCaptured = new ChessPiece[16];
+            undoEnPassant = new ChessPosition[16];
+            undoHalfmove = new int[16];
+            undoHistoryStart = new int[16];
+        } else if (undoDepth == undoInfo.length) {
+            int size = undoInfo.length * 2;
+            undoInfo = Arrays.copyOf(undoInfo, size);
+            undoMoved = Arrays.copyOf(undoMoved, size);
+            undoCaptured = Arrays.copyOf(undoCaptured, size);
+            undoEnPassant = Arrays.copyOf(undoEnPassant, size);
+            undoHalfmove = Arrays.copyOf(undoHalfmove, size);
+            undoHistoryStart = Arrays.copyOf(undoHistoryStart, size);
         }
+        undoInfo[undoDepth] = from | (to << 6) | (captureSquare << 12) | (castlingFlags() << 18);
+        undoMoved[undoDepth] = moving;
+        undoCaptured[undoDepth] = captured;
+        undoEnPassant[undoDepth] = enPassantTarget;
+        undoHalfmove[undoDepth] = halfmoveClock;
+        undoHistoryStart[undoDepth] = historyStart;
+        undoDepth++;
+    }
 
-        if (adj.getTeamColor() == pawnColor) {
-            return;
+    private void pushHistory(long key) {
+        if (keyHistory == null) {
+            keyHistory = new long[16];
+            historyChain = new int[16];
+            historyHeads = new int[HISTORY_SLOTS];
+        } else if (historySize == keyHistory.length || historyShared) {
+            unshareHistory(Math.max(historySize * 2, 16));
         }
+        int slot = slot(key);
+        historyChain[historySize] = historyHeads[slot];
+        historyHeads[slot] = historyBase + historySize + 1;
+        keyHistory[historySize++] = key;
+    }
 
-        moves.add(new ChessMove(pawnPos, enPassantTarget, null));
+    /**
+     * Gives this game its own copies of the history and its index, with room for
+     * at least {@code capacity} keys
+     */
+    private void unshareHistory(int capacity) {
+        keyHistory = Arrays.copyOf(keyHistory, capacity);
+        historyChain = Arrays.copyOf(historyChain, capacity);
+        historyHeads = historyHeads.clone();
+        historyShared = false;
     }
 
-    private void addCastlingMoves(List<ChessMove> moves, ChessPosition kingPos, TeamColor kingColor) {
-        if (kingColor == TeamColor.WHITE) {
-            if (!(kingPos.getRow() == 1 && kingPos.getColumn() == 5)) {
-                return;
-            }
-            if (whiteKingMoved) {
-                return;
-            }
-        } else {
-            if (!(kingPos.getRow() == 8 && kingPos.getColumn() == 5)) {
-                return;
-            }
-            if (blackKingMoved) {
-                return;
+    /**
+     * Moves the keys that can still repeat to the front of the history. Entries
+     * keep their numbers, so the index stays as it is.
+     */
+    private void compactHistory() {
+        if (historyStart > 0) {
+            if (historyShared) {
+                unshareHistory(keyHistory.length);
             }
+            System.arraycopy(keyHistory, historyStart, keyHistory, 0, historySize - historyStart);
+            System.arraycopy(historyChain, historyStart, historyChain, 0, historySize - historyStart);
+            historySize -= historyStart;
+            historyBase += historyStart;
+            historyStart = 0;
         }
+    }
 
-        if (isInCheck(kingColor)) {
+    /**
+     * Builds the index over the first {@code historySize} keys
+     */
+    private void indexHistory() {
+        if (keyHistory == null) {
             return;
         }
+        historyHeads = new int[HISTORY_SLOTS];
+        historyChain = new int[keyHistory.length];
+        for (int i = 0; i < historySize; i++) {
+            int slot = slot(keyHistory[i]);
+            historyChain[i] = historyHeads[slot];
+            historyHeads[slot] = historyBase + i + 1;
+        }
+    }
 
-        int row = kingPos.getRow();
-        TeamColor enemy = opposite(kingColor);
+    private static int slot(long key) {
+        return (int) key & (HISTORY_SLOTS - 1);
+    }
 
-        if (canCastleKingside(row, kingColor)) {
-            ChessPosition f = new ChessPosition(row, 6);
-            ChessPosition g = new ChessPosition(row, 7);
+    /**
+     * @return the position keys the current position can still repeat, oldest first
+     */
+    long[] repetitionHistory() {
+        return (keyHistory == null) ? new long[0] : Arrays.copyOfRange(keyHistory, historyStart, historySize);
+    }
 
-            if (!isSquareAttackedBy(board, f, enemy) && !isSquareAttackedBy(board, g, enemy)) {
-                moves.add(new ChessMove(kingPos, g, null));
-            }
+    int repetitionHistorySize() {
+        return historySize - historyStart;
+    }
+
+    /**
+     * Writes the repetition keys, oldest first
+     */
+    void writeRepetitionHistory(ByteBuffer buffer) {
+        for (int i = historyStart; i < historySize; i++) {
+            buffer.putLong(keyHistory[i]);
         }
+    }
 
-        if (canCastleQueenside(row, kingColor)) {
-            ChessPosition d = new ChessPosition(row, 4);
-            ChessPosition c = new ChessPosition(row, 3);
+    /**
+     * Rebuilds a game from its stored parts, see {@link ChessJson} and
+     * {@link ChessGameCodec}. The game takes over the history array, whose
+     * first {@code historySize} entries are the repetition keys.
+     */
+    static ChessGame restore(ChessBoard board, TeamColor turn, int castlingFlags, ChessPosition enPassantTarget,
+                             int halfmoveClock, int fullmoveNumber, long[] history, int historySize) {
+        ChessGame game = new ChessGame(board);
+        game.teamTurn = turn;
+        game.setCastlingFlags(castlingFlags);
+        game.enPassantTarget = enPassantTarget;
+        game.halfmoveClock = halfmoveClock;
+        game.fullmoveNumber = fullmoveNumber;
+        game.keyHistory = (history.length == 0) ? null : history;
+        game.historySize = historySize;
+        game.indexHistory();
+        return game;
+    }
 
-            if (!isSquareAttackedBy(board, d, enemy) && !isSquareAttackedBy(board, c, enemy)) {
-                moves.add(new ChessMove(kingPos, c, null));
+    private void clearHistory() {
+        // numbering carries on, so the index no longer reaches the dropped keys
+        historyBase += historySize;
+        historyStart = historySize = 0;
+    }
+
+    private boolean isCastle(ChessPiece moving, int from, int to) {
+        return moving.getPieceType() == ChessPiece.PieceType.KING
+                && Bitboards.row(from) == Bitboards.row(to)
+                && Math.abs(to - from) == 2;
+    }
+
+    private int castleRookFrom(int kingFrom, int kingTo) {
+        int rowStart = kingFrom & ~7;
+        return (kingTo > kingFrom) ? rowStart + 7 : rowStart;
+    }
+
+    private int castleRookTo(int kingFrom, int kingTo) {
+        return (kingFrom + kingTo) / 2;
+    }
+
+    private void updateCastlingFlags(ChessPiece piece, ChessPosition start) {
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            if (piece.getTeamColor() == TeamColor.WHITE) {
+                whiteKingMoved = true;
+            } else {
+                blackKingMoved = true;
+            }
+        } else if (piece.getPieceType() == ChessPiece.PieceType.ROOK) {
+            if (piece.getTeamColor() == TeamColor.WHITE) {
+                if (start.getRow() == 1 && start.getColumn() == 1) {
+                    whiteARookMoved = true;
+                }
+                if (start.getRow() == 1 && start.getColumn() == 8) {
+                    whiteHRookMoved = true;
+                }
+            } else {
+                if (start.getRow() == 8 && start.getColumn() == 1) {
+                    blackARookMoved = true;
+                }
+                if (start.getRow() == 8 && start.getColumn() == 8) {
+                    blackHRookMoved = true;
+                }
             }
         }
     }
 
-    private boolean canCastleKingside(int row, TeamColor kingColor) {
-        ChessPiece rook = board.getPiece(new ChessPosition(row, 8));
+    int castlingFlags() {
+        return (whiteKingMoved ? 1 : 0) | (blackKingMoved ? 2 : 0)
+                | (whiteARookMoved ? 4 : 0) | (whiteHRookMoved ? 8 : 0)
+                | (blackARookMoved ? 16 : 0) | (blackHRookMoved ? 32 : 0);
+    }
 
-        if (rook == null || rook.getPieceType() != ChessPiece.PieceType.ROOK || rook.getTeamColor() != kingColor) {
-            return false;
-        }
+    private void setCastlingFlags(int flags) {
+        whiteKingMoved = (flags & 1) != 0;
+        blackKingMoved = (flags & 2) != 0;
+        whiteARookMoved = (flags & 4) != 0;
+        whiteHRookMoved = (flags & 8) != 0;
+        blackARookMoved = (flags & 16) != 0;
+        blackHRookMoved = (flags & 32) != 0;
+    }
 
-        if (kingColor == TeamColor.WHITE && whiteHRookMoved) {
-            return false;
-        }
+    public boolean isInCheck(TeamColor teamColor) {
+        int king = board.kingSquare(teamColor);
+        return king >= 0 && (board.attackedSquares(opposite(teamColor)) & Bitboards.bit(king)) != 0;
+    }
 
-        if (kingColor == TeamColor.BLACK && blackHRookMoved) {
-            return false;
-        }
+    public boolean isInCheckmate(TeamColor teamColor) {
+        return status(teamColor) == GameStatus.CHECKMATE;
+    }
 
-        if (board.getPiece(new ChessPosition(row, 6)) != null) {
-            return false;
-        }
+    public boolean isInStalemate(TeamColor teamColor) {
+        return status(teamColor) == GameStatus.STALEMATE;
+    }
 
-        if (board.getPiece(new ChessPosition(row, 7)) != null) {
-            return false;
+    /**
+     * Works out check, checkmate and stalemate for a team in one sweep, stopping
+     * at the first legal move found. The answer is kept until the game or its
+     * board changes.
+     */
+    public GameStatus status(TeamColor teamColor) {
+        if (frozen) {
+            return computeStatus(teamColor);
         }
-
-        return true;
+        checkStamp();
+        GameStatus status = statusCache[teamColor.ordinal()];
+        if (status == null) {
+            status = computeStatus(teamColor);
+            statusCache[teamColor.ordinal()] = status;
+        }
+        return status;
     }
 
-    private boolean canCastleQueenside(int row, TeamColor kingColor) {
-        ChessPiece rook = board.getPiece(new ChessPosition(row, 1));
+    /**
+     * Drops the cached status and moves once the game or its board has changed
+     * since they were worked out
+     */
+    private void checkStamp() {
+        if (statusCache == null) {
+            statusCache = new GameStatus[2];
+            moveCache = new MoveList[]{new MoveList(), new MoveList()};
+            moveCacheValid = new boolean[2];
+        }
+        long stamp = ((long) stateVersion << 32) | (board.version() & 0xFFFFFFFFL);
+        if (statusBoard != board || statusStamp != stamp) {
+            statusCache[0] = statusCache[1] = null;
+            moveCacheValid[0] = moveCacheValid[1] = false;
+            statusBoard = board;
+            statusStamp = stamp;
+        }
+    }
 
-        if (rook == null || rook.getPieceType() != ChessPiece.PieceType.ROOK || rook.getTeamColor() != kingColor) {
-            return false;
+    /**
+     * @return how many times the current position has occurred with the same
+     * team to move, castling rights and en passant options, counting itself.
+     * Only the earlier positions whose key shares its slot in the history index
+     * are looked at, and of those only the ones since the last capture or pawn
+     * move, since no earlier one can come back.
+     */
+    public int repetitionCount() {
+        if (historyHeads == null) {
+            return 1;
+        }
+        long key = positionKey();
+        int count = 1;
+        int first = historyBase + historyStart;
+        for (int entry = historyHeads[slot(key)] - 1; entry >= first; entry = historyChain[entry - historyBase] - 1) {
+            if (keyHistory[entry - historyBase] == key) {
+                count++;
+            }
         }
+        return count;
+    }
 
-        if (kingColor == TeamColor.WHITE && whiteARookMoved) {
-            return false;
+    /**
+     * @return the reason the game is drawn, or null if it is not. Automatic
+     * draws are reported ahead of claimable ones. This does not look for
+     * checkmate, which takes precedence over the move-count rules, or for
+     * stalemate, which {@link #status} reports.
+     */
+    public DrawReason drawReason() {
+        if (board.hasInsufficientMaterial()) {
+            return DrawReason.INSUFFICIENT_MATERIAL;
+        }
+        int repetitions = repetitionCount();
+        if (repetitions >= 5) {
+            return DrawReason.FIVEFOLD_REPETITION;
+        }
+        if (halfmoveClock >= 150) {
+            return DrawReason.SEVENTY_FIVE_MOVE_RULE;
         }
+        if (repetitions >= 3) {
+            return DrawReason.THREEFOLD_REPETITION;
+        }
+        if (halfmoveClock >= 100) {
+            return DrawReason.FIFTY_MOVE_RULE;
+        }
+        return null;
+    }
 
-        if (kingColor == TeamColor.BLACK && blackARookMoved) {
-            return false;
+    private GameStatus computeStatus(TeamColor teamColor) {
+        // validMoves reports nothing for a side without a king, which leaves it stalemated
+        if (board.kingSquare(teamColor) < 0) {
+            return GameStatus.STALEMATE;
         }
 
-        if (board.getPiece(new ChessPosition(row, 2)) != null) {
-            return false;
+        MoveGenerator generator = new MoveGenerator(this, teamColor);
+        MoveList moves;
+        if (frozen) {
+            moves = new MoveList();
+        } else {
+            if (scratch == null) {
+                scratch = new MoveList();
+            }
+            moves = scratch;
+        }
+        boolean hasMove = false;
+        if (!frozen && moveCacheValid[teamColor.ordinal()]) {
+            hasMove = !moveCache[teamColor.ordinal()].isEmpty();
+        } else {
+            // stopping at the first legal move is cheaper than generating them all
+            long pieces = board.occupancy(teamColor);
+            while (pieces != 0 && !hasMove) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+
+                moves.clear();
+                generator.generate(square, moves);
+                hasMove = !moves.isEmpty();
+            }
         }
 
-        if (board.getPiece(new ChessPosition(row, 3)) != null) {
-            return false;
+        if (generator.inCheck()) {
+            return hasMove ? GameStatus.CHECK : GameStatus.CHECKMATE;
         }
+        return hasMove ? GameStatus.ONGOING : GameStatus.STALEMATE;
+    }
 
-        if (board.getPiece(new ChessPosition(row, 4)) != null) {
-            return false;
+    public void setBoard(ChessBoard board) {
+        checkNotFrozen();
+        this.board = board;
+        whiteKingMoved = blackKingMoved = false;
+        whiteARookMoved = whiteHRookMoved = false;
+        blackARookMoved = blackHRookMoved = false;
+        enPassantTarget = null;
+        clearHistory();
+        stateVersion++;
+    }
+
+    public ChessBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * @return a game in the same state that can be played independently
+     */
+    public ChessGame copy() {
+        ChessGame copy = new ChessGame(this, board.copy());
+        if (keyHistory != null) {
+            copy.keyHistory = keyHistory.clone();
+            copy.historyHeads = historyHeads.clone();
+            copy.historyChain = historyChain.clone();
         }
+        return copy;
+    }
 
-        return true;
+    /**
+     * @return an unchangeable view of the game as it stands now, for
+     * serializing, broadcasting or keeping as history while this game plays on.
+     * The snapshot shares the board's rows and the position history with this
+     * game; whichever rows this game later changes are copied first. Taking a
+     * snapshot costs the board's table of rows and its small index arrays, and
+     * none of the undo stack or move caches a game in play allocates. Its
+     * queries never write to it, so it can be read from any number of threads
+     * once safely published. Use {@link #copy()} to continue play from one.
+     */
+    public ChessGame snapshot() {
+        if (frozen) {
+            return this;
+        }
+        ChessGame snapshot = new ChessGame(this, board.snapshot());
+        snapshot.keyHistory = keyHistory;
+        snapshot.historyHeads = historyHeads;
+        snapshot.historyChain = historyChain;
+        snapshot.frozen = true;
+        historyShared = true;
+        return snapshot;
     }
 
-    private void applyMoveWithSpecialRules(ChessBoard b, ChessMove move) {
-        ChessPosition start = move.getStartPosition();
-        ChessPosition end = move.getEndPosition();
-        ChessPiece moving = b.getPiece(start);
+    /**
+     * @return whether this game is a snapshot that cannot be changed
+     */
+    public boolean isSnapshot() {
+        return frozen;
+    }
 
-        if (moving == null) {
-            return;
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("game snapshots cannot be changed");
         }
+    }
 
-        boolean isCastle = moving.getPieceType() == ChessPiece.PieceType.KING
-                && start.getRow() == end.getRow()
-                && Math.abs(end.getColumn() - start.getColumn()) == 2;
+    /**
+     * @return plies played since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
 
-        boolean isEnPassant = moving.getPieceType() == ChessPiece.PieceType.PAWN
-                && enPassantTarget != null
-                && end.equals(enPassantTarget)
-                && b.getPiece(end) == null
-                && start.getColumn() != end.getColumn();
+    /**
+     * @return the current move number, starting at 1 and going up after each black move
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
 
-        b.addPiece(start, null);
+    /**
+     * @return plies played since the start of the game, taken from the move number and
+     * the side to move, so it goes up by exactly one with each move
+     */
+    public int getPlyNumber() {
+        return 2 * (fullmoveNumber - 1) + (teamTurn == TeamColor.BLACK ? 1 : 0);
+    }
 
-        if (isEnPassant) {
-            int capturedRow = (moving.getTeamColor() == TeamColor.WHITE) ? end.getRow() - 1 : end.getRow() + 1;
-            b.addPiece(new ChessPosition(capturedRow, end.getColumn()), null);
+    /**
+     * Reads a game from Forsyth-Edwards Notation. The two move counters may be
+     * left off, in which case they start at 0 and 1.
+     *
+     * @throws IllegalArgumentException if the text is not a valid FEN record
+     */
+    public static ChessGame fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new IllegalArgumentException("expected 4 to 6 fields in FEN: " + fen);
         }
 
-        if (move.getPromotionPiece() != null) {
-            b.addPiece(end, new ChessPiece(moving.getTeamColor(), move.getPromotionPiece()));
-        } else {
-            b.addPiece(end, moving);
-        }
-
-        if (isCastle) {
-            int row = start.getRow();
-
-            if (end.getColumn() == 7) {
-                ChessPosition rookFrom = new ChessPosition(row, 8);
-                ChessPosition rookTo = new ChessPosition(row, 6);
-                ChessPiece rook = b.getPiece(rookFrom);
-                b.addPiece(rookFrom, null);
-                b.addPiece(rookTo, rook);
-            } else if (end.getColumn() == 3) {
-                ChessPosition rookFrom = new ChessPosition(row, 1);
-                ChessPosition rookTo = new ChessPosition(row, 4);
-                ChessPiece rook = b.getPiece(rookFrom);
-                b.addPiece(rookFrom, null);
-                b.addPiece(rookTo, rook);
-            }
-        }
-    }
+        ChessBoard board = parseFenBoard(fields[0]);
+        TeamColor turn = switch (fields[1]) {
+            case "w" -> TeamColor.WHITE;
+            case "b" -> TeamColor.BLACK;
+            default -> throw new IllegalArgumentException("bad side to move in FEN: " + fields[1]);
+        };
 
-    public boolean isInCheck(TeamColor teamColor) {
-        ChessPosition kingPosition = findKing(board, teamColor);
+        String castling = fields[2];
+        if (!castling.equals("-") && !castling.matches("K?Q?k?q?")) {
+            throw new IllegalArgumentException("bad castling rights in FEN: " + castling);
+        }
+        // a right left out of the record counts as its rook having moved, and
+        // both left out as the king having moved
+        int flags = (castling.indexOf('Q') < 0 ? 4 : 0) | (castling.indexOf('K') < 0 ? 8 : 0)
+                | (castling.indexOf('q') < 0 ? 16 : 0) | (castling.indexOf('k') < 0 ? 32 : 0);
+        if ((flags & 12) == 12) {
+            flags |= 1;
+        }
+        if ((flags & 48) == 48) {
+            flags |= 2;
+        }
 
-        if (kingPosition == null) {
-            return false;
+        ChessPosition enPassant = null;
+        if (!fields[3].equals("-")) {
+            enPassant = parseEnPassant(fields[3], board, turn);
         }
 
-        TeamColor enemy = opposite(teamColor);
-        return isSquareAttackedBy(board, kingPosition, enemy);
+        int halfmoveClock = (fields.length > 4) ? parseCounter(fields[4], 0) : 0;
+        int fullmoveNumber = (fields.length > 5) ? parseCounter(fields[5], 1) : 1;
+        return restore(board, turn, flags, enPassant, halfmoveClock, fullmoveNumber, new long[0], 0);
     }
 
-    public boolean isInCheckmate(TeamColor teamColor) {
-        if (!isInCheck(teamColor)) {
-            return false;
+    /**
+     * @return the en passant target, which must lie just behind a pawn of the
+     * other side that could have just moved two squares from its home row
+     */
+    private static ChessPosition parseEnPassant(String field, ChessBoard board, TeamColor turn) {
+        int row = (turn == TeamColor.WHITE) ? 6 : 3;
+        if (!field.matches("[a-h]" + row)) {
+            throw new IllegalArgumentException("bad en passant square in FEN: " + field);
         }
+        int column = field.charAt(0) - 'a' + 1;
+        int forward = (turn == TeamColor.WHITE) ? -1 : 1;
+        TeamColor mover = (turn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        if (board.pieceAt(Bitboards.square(row, column)) != null
+                || board.pieceAt(Bitboards.square(row - forward, column)) != null
+                || !ChessPiece.of(mover, ChessPiece.PieceType.PAWN).equals(board.pieceAt(Bitboards.square(row + forward, column)))) {
+            throw new IllegalArgumentException("no pawn can have just moved past en passant square in FEN: " + field);
+        }
+        return ChessPosition.of(row, column);
+    }
 
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition position = new ChessPosition(r, c);
-                ChessPiece piece = board.getPiece(position);
-
-                if (piece != null && piece.getTeamColor() == teamColor) {
-                    Collection<ChessMove> moves = validMoves(position);
-                    if (moves != null && !moves.isEmpty()) {
-                        return false;
-                    }
+    /**
+     * Writes this game in Forsyth-Edwards Notation. A castling right is only
+     * written while its king and rook still stand on their home squares.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.pieceAt(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
                 }
+                fen.append(fenSymbol(piece));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 1) {
+                fen.append('/');
             }
         }
 
-        return true;
-    }
+        fen.append(teamTurn == TeamColor.WHITE ? " w " : " b ");
 
-    public boolean isInStalemate(TeamColor teamColor) {
-        if (isInCheck(teamColor)) {
-            return false;
+        int rights = castlingRights();
+        if (rights == 0) {
+            fen.append('-');
+        }
+        if ((rights & Zobrist.WHITE_KINGSIDE) != 0) {
+            fen.append('K');
+        }
+        if ((rights & Zobrist.WHITE_QUEENSIDE) != 0) {
+            fen.append('Q');
+        }
+        if ((rights & Zobrist.BLACK_KINGSIDE) != 0) {
+            fen.append('k');
+        }
+        if ((rights & Zobrist.BLACK_QUEENSIDE) != 0) {
+            fen.append('q');
         }
 
-        for (int r = 1; r <= 8; r++) {
-            for (int c = 1; c <= 8; c++) {
-                ChessPosition pos = new ChessPosition(r, c);
-                ChessPiece piece = board.getPiece(pos);
+        fen.append(' ');
+        if (enPassantTarget == null) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + enPassantTarget.getColumn() - 1)).append(enPassantTarget.getRow());
+        }
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+    }
 
-                if (piece != null && piece.getTeamColor() == teamColor) {
-                    Collection<ChessMove> moves = validMoves(pos);
-                    if (moves != null && !moves.isEmpty()) {
-                        return false;
-                    }
+    private static ChessBoard parseFenBoard(String placement) {
+        String[] rows = placement.split("/", -1);
+        if (rows.length != 8) {
+            throw new IllegalArgumentException("expected 8 rows in FEN board: " + placement);
+        }
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : rows[i].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                } else if (col <= 8) {
+                    board.setPiece(Bitboards.square(row, col++), pieceFromSymbol(c));
+                } else {
+                    col++;
                 }
             }
+            if (col != 9) {
+                throw new IllegalArgumentException("FEN row does not cover 8 squares: " + rows[i]);
+            }
         }
+        return board;
+    }
 
-        return true;
+    private static int parseCounter(String field, int minimum) {
+        try {
+            int value = Integer.parseInt(field);
+            if (value >= minimum) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("bad move counter in FEN: " + field);
     }
 
-    public void setBoard(ChessBoard board) {
-        this.board = board;
-        whiteKingMoved = blackKingMoved = false;
-        whiteARookMoved = whiteHRookMoved = false;
-        blackARookMoved = blackHRookMoved = false;
-        enPassantTarget = null;
+    static char fenSymbol(ChessPiece piece) {
+        char symbol = switch (piece.getPieceType()) {
+            case KING -> 'k';
+            case QUEEN -> 'q';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            case ROOK -> 'r';
+            case PAWN -> 'p';
+        };
+        return piece.getTeamColor() == TeamColor.WHITE ? Character.toUpperCase(symbol) : symbol;
     }
 
-    public ChessBoard getBoard() {
-        return board;
+    static ChessPiece pieceFromSymbol(char symbol) {
+        ChessPiece.PieceType type = switch (Character.toLowerCase(symbol)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("unknown piece in FEN: " + symbol);
+        };
+        TeamColor color = Character.isUpperCase(symbol) ? TeamColor.WHITE : TeamColor.BLACK;
+        return ChessPiece.of(color, type);
     }
 
     @Override
@@ -488,11 +1028,23 @@ public class ChessGame {
         }
 
         ChessGame chessGame = (ChessGame) o;
-        return teamTurn == chessGame.teamTurn && Objects.equals(board, chessGame.board);
+        if (teamTurn != chessGame.teamTurn) {
+            return false;
+        }
+        if (board == null || chessGame.board == null) {
+            return board == chessGame.board;
+        }
+        // differing keys settle it; matching keys are confirmed against the boards
+        return board.pieceKey() == chessGame.board.pieceKey() && board.equals(chessGame.board);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(teamTurn, board);
+        // equality only covers the board and team to move, so the hash covers the same
+        long key = (board == null) ? 0L : board.pieceKey();
+        if (teamTurn == TeamColor.BLACK) {
+            key ^= Zobrist.blackToMove();
+        }
+        return Long.hashCode(key);
     }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package chess;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs a game into a small binary record for storage.
+ * <p>
+ * The record always takes {@value #BYTES} bytes:
+ * <pre>
+ *  0      format version, currently 2
+ *  1..32  one nibble per square from a1 to h8, low nibble first: 0 for an
+ *         empty square, otherwise 1 + the piece index (color * 6 + type ordinal)
+ *  33     bit 0 set when black is to move, bits 1 to 6 the king and rook moved flags
+ *  34     en passant target square + 1, or 0 for none
+ *  35..36 halfmove clock
+ *  37..38 fullmove number
+ * </pre>
+ * The position keys needed to detect repetitions vary in number, so they are
+ * kept out of the record: {@link #encodeHistory} writes them separately, 8
+ * bytes each and oldest first, and {@link #decode(byte[], byte[])} takes them
+ * back. All numbers are big-endian and unsigned. Decoding places the shared
+ * {@link ChessPiece} instances straight onto a new board, so neither direction
+ * builds intermediate objects.
+ * <p>
+ * Version 1 records, which carried the keys after a 41 byte header, are still
+ * read.
+ */
+public final class ChessGameCodec {
+
+    public static final int VERSION = 2;
+    public static final int BYTES = 39;
+
+    // version 1 ended its header with a key count and had the keys follow
+    private static final int VERSION_1_HEADER_BYTES = 41;
+
+    private static final ChessPiece[] PIECES = new ChessPiece[13];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                PIECES[ChessBoard.pieceIndex(color, type) + 1] = ChessPiece.of(color, type);
+            }
+        }
+    }
+
+    private ChessGameCodec() {
+    }
+
+    public static byte[] encode(ChessGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES);
+        encode(game, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Writes the game's record at the buffer's position and advances it
+     */
+    public static void encode(ChessGame game, ByteBuffer buffer) {
+        buffer.put((byte) VERSION);
+        ChessBoard board = game.getBoard();
+        for (int square = 0; square < 64; square += 2) {
+            buffer.put((byte) (code(board.pieceAt(square)) | (code(board.pieceAt(square + 1)) << 4)));
+        }
+        int turn = (game.getTeamTurn() == ChessGame.TeamColor.BLACK) ? 1 : 0;
+        buffer.put((byte) (turn | (game.castlingFlags() << 1)));
+        ChessPosition enPassant = game.getEnPassantTarget();
+        buffer.put((byte) (enPassant == null ? 0 : Bitboards.square(enPassant) + 1));
+        buffer.putShort((short) Math.min(game.getHalfmoveClock(), 0xFFFF));
+        buffer.putShort((short) Math.min(game.getFullmoveNumber(), 0xFFFF));
+    }
+
+    /**
+     * @return the keys of the earlier positions the current one can still
+     * repeat, 8 bytes each; empty right after a capture or pawn move
+     */
+    public static byte[] encodeHistory(ChessGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * game.repetitionHistorySize());
+        game.writeRepetitionHistory(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * @return the game in the record, with no earlier positions to repeat
+     * @throws IllegalArgumentException if the bytes are not an encoded game
+     */
+    public static ChessGame decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @param history the keys from {@link #encodeHistory}, or null for none
+     * @return the game in the record, with its repetition history
+     * @throws IllegalArgumentException if the bytes are not an encoded game
+     */
+    public static ChessGame decode(byte[] bytes, byte[] history) {
+        return decode(ByteBuffer.wrap(bytes), (history == null) ? null : ByteBuffer.wrap(history));
+    }
+
+    /**
+     * Reads a game record from the buffer's position and advances it
+     *
+     * @throws IllegalArgumentException if the bytes are not an encoded game
+     */
+    public static ChessGame decode(ByteBuffer buffer) {
+        return decode(buffer, null);
+    }
+
+    private static ChessGame decode(ByteBuffer buffer, ByteBuffer history) {
+        if (buffer.remaining() < BYTES) {
+            throw new IllegalArgumentException("encoded game is too short: " + buffer.remaining() + " bytes");
+        }
+        int version = buffer.get();
+        if (version != VERSION && version != 1) {
+            throw new IllegalArgumentException("unknown encoded game version " + version);
+        }
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int pair = buffer.get();
+            board.setPiece(square, piece(pair & 0xF));
+            board.setPiece(square + 1, piece((pair >>> 4) & 0xF));
+        }
+        int flags = buffer.get();
+        int enPassant = buffer.get() & 0xFF;
+        if (enPassant > 64) {
+            throw new IllegalArgumentException("bad en passant square " + (enPassant - 1));
+        }
+        int halfmoveClock = buffer.getShort() & 0xFFFF;
+        int fullmoveNumber = buffer.getShort() & 0xFFFF;
+
+        int keys = 0;
+        if (version == 1) {
+            if (buffer.remaining() < VERSION_1_HEADER_BYTES - BYTES) {
+                throw new IllegalArgumentException("encoded game is too short");
+            }
+            keys = buffer.getShort() & 0xFFFF;
+            history = buffer;
+        } else if (history != null) {
+            if (history.remaining() % 8 != 0) {
+                throw new IllegalArgumentException("repetition history is not a whole number of keys");
+            }
+            keys = history.remaining() / 8;
+        }
+        if (keys > 0 && history.remaining() < keys * 8) {
+            throw new IllegalArgumentException("encoded game is missing repetition keys");
+        }
+        long[] positions = new long[keys];
+        for (int i = 0; i < keys; i++) {
+            positions[i] = history.getLong();
+        }
+
+        ChessGame.TeamColor turn = ((flags & 1) != 0) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return ChessGame.restore(board, turn, (flags >>> 1) & 0x3F,
+                enPassant == 0 ? null : ChessPosition.of(enPassant - 1), halfmoveClock, fullmoveNumber, positions, keys);
+    }
+
+    private static int code(ChessPiece piece) {
+        return (piece == null) ? 0 : ChessBoard.pieceIndex(piece.getTeamColor(), piece.getPieceType()) + 1;
+    }
+
+    private static ChessPiece piece(int code) {
+        if (code >= PIECES.length) {
+            throw new IllegalArgumentException("bad piece code " + code);
+        }
+        return PIECES[code];
+    }
+}
@@ -0,0 +1,291 @@
+package chess;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The JSON forms of pieces, boards and games, attached to those classes with
+ * {@code @JsonAdapter} so that every Gson instance uses them.
+ * <p>
+ * A piece is its FEN letter, such as {@code "K"} or {@code "p"}. A board is a
+ * string of 64 such letters from a1 to h8 in {@link Bitboards} order, with
+ * {@code '.'} for an empty square. A game is an object holding the
+ * {@code board}, the {@code turn} ({@code "w"} or {@code "b"}), the
+ * {@code clock} as [halfmove clock, fullmove number] and, only when they are
+ * set, the {@code moved} king and rook flags, the {@code ep} en passant target
+ * such as {@code "e3"} and the {@code history} of position keys since the last
+ * capture or pawn move.
+ * <p>
+ * Reading also accepts the field-by-field form Gson wrote before these
+ * adapters existed, so games stored that way still load.
+ */
+final class ChessJson {
+
+    private static final TypeAdapter<ChessBoard> BOARD = new BoardAdapter();
+    private static final TypeAdapter<ChessPiece> PIECE = new PieceAdapter();
+
+    private ChessJson() {
+    }
+
+    static final class PieceAdapter extends TypeAdapter<ChessPiece> {
+
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            if (piece == null) {
+                out.nullValue();
+                return;
+            }
+            out.value(String.valueOf(ChessGame.fenSymbol(piece)));
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            if (token == JsonToken.STRING) {
+                String symbol = in.nextString();
+                if (symbol.length() != 1) {
+                    throw new JsonParseException("bad piece: " + symbol);
+                }
+                return pieceFromSymbol(symbol.charAt(0));
+            }
+            ChessGame.TeamColor color = null;
+            ChessPiece.PieceType type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pieceColor" -> color = ChessGame.TeamColor.valueOf(in.nextString());
+                    case "type" -> type = ChessPiece.PieceType.valueOf(in.nextString());
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            if (color == null || type == null) {
+                throw new JsonParseException("piece without a color or type");
+            }
+            return ChessPiece.of(color, type);
+        }
+    }
+
+    static final class BoardAdapter extends TypeAdapter<ChessBoard> {
+
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            if (board == null) {
+                out.nullValue();
+                return;
+            }
+            char[] text = new char[64];
+            for (int square = 0; square < 64; square++) {
+                ChessPiece piece = board.pieceAt(square);
+                text[square] = (piece == null) ? '.' : ChessGame.fenSymbol(piece);
+            }
+            out.value(new String(text));
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            JsonToken token = in.peek();
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ChessPiece[][] squares = new ChessPiece[8][8];
+            if (token == JsonToken.STRING) {
+                String text = in.nextString();
+                if (text.length() != 64) {
+                    throw new JsonParseException("a board needs 64 squares, not " + text.length());
+                }
+                for (int square = 0; square < 64; square++) {
+                    char symbol = text.charAt(square);
+                    squares[square >>> 3][square & 7] = (symbol == '.') ? null : pieceFromSymbol(symbol);
+                }
+            } else {
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (in.nextName().equals("squares") && in.peek() != JsonToken.NULL) {
+                        readSquares(in, squares);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            ChessBoard board = new ChessBoard();
+            for (int square = 0; square < 64; square++) {
+                ChessPiece piece = squares[square >>> 3][square & 7];
+                if (piece != null) {
+                    // the shared instance, in place of the deserialized one
+                    board.setPiece(square, ChessPiece.of(piece.getTeamColor(), piece.getPieceType()));
+                }
+            }
+            return board;
+        }
+
+        private static void readSquares(JsonReader in, ChessPiece[][] squares) throws IOException {
+            in.beginArray();
+            for (int row = 0; in.hasNext(); row++) {
+                in.beginArray();
+                for (int col = 0; in.hasNext(); col++) {
+                    ChessPiece piece = PIECE.read(in);
+                    if (row < 8 && col < 8) {
+                        squares[row][col] = piece;
+                    }
+                }
+                in.endArray();
+            }
+            in.endArray();
+        }
+    }
+
+    static final class GameAdapter extends TypeAdapter<ChessGame> {
+
+        @Override
+        public void write(JsonWriter out, ChessGame game) throws IOException {
+            if (game == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("board");
+            BOARD.write(out, game.getBoard());
+            out.name("turn").value(game.getTeamTurn() == ChessGame.TeamColor.BLACK ? "b" : "w");
+            out.name("clock").beginArray().value(game.getHalfmoveClock()).value(game.getFullmoveNumber()).endArray();
+            int moved = game.castlingFlags();
+            if (moved != 0) {
+                out.name("moved").value(moved);
+            }
+            ChessPosition enPassant = game.getEnPassantTarget();
+            if (enPassant != null) {
+                out.name("ep").value("" + (char) ('a' + enPassant.getColumn() - 1) + enPassant.getRow());
+            }
+            long[] history = game.repetitionHistory();
+            if (history.length > 0) {
+                out.name("history").beginArray();
+                for (long key : history) {
+                    out.value(key);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ChessBoard board = null;
+            ChessGame.TeamColor turn = ChessGame.TeamColor.WHITE;
+            int moved = 0;
+            ChessPosition enPassant = null;
+            int halfmoveClock = 0;
+            int fullmoveNumber = 1;
+            long[] history = new long[0];
+            int historyStart = 0;
+            int historySize = -1;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "board" -> board = BOARD.read(in);
+                    case "turn" -> turn = in.nextString().equals("b") ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+                    case "clock" -> {
+                        in.beginArray();
+                        halfmoveClock = in.nextInt();
+                        fullmoveNumber = in.nextInt();
+                        in.endArray();
+                    }
+                    case "moved" -> moved = in.nextInt();
+                    case "ep" -> enPassant = parseSquare(in.nextString());
+                    case "history", "keyHistory" -> history = readKeys(in);
+                    // the field-by-field form
+                    case "teamTurn" -> turn = ChessGame.TeamColor.valueOf(in.nextString());
+                    case "whiteKingMoved" -> moved |= in.nextBoolean() ? 1 : 0;
+                    case "blackKingMoved" -> moved |= in.nextBoolean() ? 2 : 0;
+                    case "whiteARookMoved" -> moved |= in.nextBoolean() ? 4 : 0;
+                    case "whiteHRookMoved" -> moved |= in.nextBoolean() ? 8 : 0;
+                    case "blackARookMoved" -> moved |= in.nextBoolean() ? 16 : 0;
+                    case "blackHRookMoved" -> moved |= in.nextBoolean() ? 32 : 0;
+                    case "enPassantTarget" -> enPassant = readPosition(in);
+                    case "halfmoveClock" -> halfmoveClock = in.nextInt();
+                    case "fullmoveNumber" -> fullmoveNumber = in.nextInt();
+                    case "historyStart" -> historyStart = in.nextInt();
+                    case "historySize" -> historySize = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (historySize >= 0) {
+                int end = Math.min(historySize, history.length);
+                history = Arrays.copyOfRange(history, Math.min(historyStart, end), end);
+            }
+            if (board == null) {
+                board = new ChessBoard();
+                board.resetBoard();
+            }
+            return ChessGame.restore(board, turn, moved, enPassant, halfmoveClock, fullmoveNumber,
+                    history, history.length);
+        }
+
+        private static long[] readKeys(JsonReader in) throws IOException {
+            long[] keys = new long[16];
+            int size = 0;
+            in.beginArray();
+            while (in.hasNext()) {
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                }
+                keys[size++] = in.nextLong();
+            }
+            in.endArray();
+            return Arrays.copyOf(keys, size);
+        }
+
+        private static ChessPosition readPosition(JsonReader in) throws IOException {
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = in.nextInt();
+                    case "col" -> col = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return ChessPosition.of(row, col);
+        }
+
+        private static ChessPosition parseSquare(String text) {
+            if (!text.matches("[a-h][1-8]")) {
+                throw new JsonParseException("bad en passant square: " + text);
+            }
+            return ChessPosition.of(text.charAt(1) - '0', text.charAt(0) - 'a' + 1);
+        }
+    }
+
+    private static ChessPiece pieceFromSymbol(char symbol) {
+        try {
+            return ChessGame.pieceFromSymbol(symbol);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("bad piece: " + symbol);
+        }
+    }
+}
@@ -10,6 +10,9 @@ import java.util.Objects;
  */
 public class ChessMove {
 
+    // lazily filled table of shared moves, indexed by moveIndex()
+    private static final ChessMove[] CANONICAL = new ChessMove[64 * 64 * 7];
+
     private final ChessPosition startPosition;
     private final ChessPosition endPosition;
     private final ChessPiece.PieceType promotionPiece;
@@ -21,6 +24,21 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * @return the shared instance for a move between two square indexes
+     * (see {@link Bitboards}). Moves are immutable, so an instance published by
+     * one thread is safe to hand out from any other.
+     */
+    public static ChessMove of(int from, int to, ChessPiece.PieceType promotionPiece) {
+        int index = (from * 64 + to) * 7 + (promotionPiece == null ? 0 : promotionPiece.ordinal() + 1);
+        ChessMove move = CANONICAL[index];
+        if (move == null) {
+            move = new ChessMove(ChessPosition.of(from), ChessPosition.of(to), promotionPiece);
+            CANONICAL[index] = move;
+        }
+        return move;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -61,6 +79,23 @@ public class ChessMove {
         return promotionPiece;
     }
 
+    /**
+     * @return the move in coordinate notation, such as "e2e4" or "e7e8q"
+     */
+    public String toCoordinates() {
+        String squares = startPosition.toCoordinate() + endPosition.toCoordinate();
+        if (promotionPiece == null) {
+            return squares;
+        }
+        return squares + switch (promotionPiece) {
+            case QUEEN -> 'q';
+            case ROOK -> 'r';
+            case BISHOP -> 'b';
+            case KNIGHT -> 'n';
+            default -> throw new IllegalArgumentException("bad promotion: " + promotionPiece);
+        };
+    }
+
     @Override
     public String toString() {
         return String.format("%s%s", startPosition, endPosition);
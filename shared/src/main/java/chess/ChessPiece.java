@@ -1,5 +1,7 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
@@ -10,16 +12,34 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJson.PieceAdapter.class)
 public class ChessPiece {
 
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
 
+    private static final ChessPiece[] CANONICAL = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                CANONICAL[color.ordinal() * 6 + type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
+    /**
+     * @return the shared instance for a color and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return CANONICAL[pieceColor.ordinal() * 6 + type.ordinal()];
+    }
+
     /**
      * The various different chess piece options
      */
@@ -60,6 +80,14 @@ public class ChessPiece {
         return Objects.hash(pieceColor, type);
     }
 
+    static final int[][] BISHOP_DIRECTIONS = {{1,1}, {1,-1}, {-1,1}, {-1,-1}};
+    static final int[][] ROOK_DIRECTIONS = {{1,0}, {-1,0}, {0,1}, {0,-1}};
+    static final int[][] QUEEN_DIRECTIONS = {{1,0}, {-1,0}, {0,1}, {0,-1}, {1,1}, {1,-1}, {-1,1}, {-1,-1}};
+    static final int[][] KNIGHT_DIRECTIONS = {{1,2}, {-1,2}, {2,1}, {2,-1}, {1,-2}, {-1,-2}, {-2,1}, {-2,-1}};
+    static final int[][] KING_DIRECTIONS = QUEEN_DIRECTIONS;
+
+    private static final PieceType[] PROMOTIONS = {PieceType.ROOK, PieceType.BISHOP, PieceType.QUEEN, PieceType.KNIGHT};
+
     /**
      * Calculates all the positions a chess piece can move to
      * Does not take into account moves that are illegal due to leaving the king in
@@ -68,141 +96,72 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        ChessPiece piece = board.getPiece(myPosition);
-        Collection<ChessMove> moves = new ArrayList<>();
-        if (piece.getPieceType() == PieceType.BISHOP) {
-            int[][] directions = {{1,1}, {1,-1}, {-1,1}, {-1,-1}}; //all directions bishop can move to
-            repeatMovement(board, myPosition, directions, moves);
-        } else if (piece.getPieceType() == PieceType.ROOK){
-            int[][] directions = {{1,0}, {-1,0}, {0,1}, {0,-1}}; //all directions rook can move to
-            repeatMovement(board, myPosition, directions, moves);
-        } else if (piece.getPieceType() == PieceType.QUEEN) {
-            int[][] directions = {{1,0}, {-1,0}, {0,1}, {0,-1}, {1,1}, {1,-1}, {-1,1}, {-1,-1}}; //all directions queen can move to
-            repeatMovement(board, myPosition, directions, moves);
-        } else if (piece.getPieceType() == PieceType.KNIGHT){
-            int[][] directions = {{1,2}, {-1,2}, {2,1}, {2,-1}, {1,-2}, {-1,-2}, {-2,1}, {-2,-1}}; //all directions knight can move to
-            singleMove(board, myPosition, directions, moves);
-        } else if (piece.getPieceType() == PieceType.KING){
-            int[][] directions = {{1,0}, {-1,0}, {0,1}, {0,-1}, {1,1}, {1,-1}, {-1,1}, {-1,-1}}; //all directions king can move to
-            singleMove(board, myPosition, directions, moves);
-        } else if (piece.getPieceType() == PieceType.PAWN) {
-            int r = myPosition.getRow();
-            int c = myPosition.getColumn();
-            if (piece.getTeamColor() == ChessGame.TeamColor.WHITE){ //moves for white pawn
-                if (r <= 6) { //single space moves and captures
-                    if (board.getPiece(new ChessPosition(r+1, c)) == null) {
-                        moves.add(new ChessMove(myPosition, new ChessPosition(r + 1, c), null));
-                    }
-                    if (c != 1 && board.getPiece(new ChessPosition(r+1, c-1)) != null
-                            && (board.getPiece(new ChessPosition(r+1, c-1)).getTeamColor() == ChessGame.TeamColor.BLACK)) {
-                        moves.add(new ChessMove(myPosition, new ChessPosition(r+1, c-1), null));
-                    }
-
-                    if (c != 8 && board.getPiece(new ChessPosition(r+1, c+1)) != null
-                            && (board.getPiece(new ChessPosition(r+1, c+1)).getTeamColor() == ChessGame.TeamColor.BLACK)) {
-                        moves.add(new ChessMove(myPosition, new ChessPosition(r+1, c+1), null));
-                    }
-                }
-                if (r == 2 && board.getPiece(new ChessPosition(r+2, c)) == null
-                        && board.getPiece(new ChessPosition(r+1, c)) == null) { //double space move
-                    moves.add(new ChessMove(myPosition, new ChessPosition(r+2, c), null));
-                }
-
-                if (r == 7) { //promotion moves and promotion captures
-                    if (board.getPiece(new ChessPosition(r+1, c)) == null) {
-                        promoteMoves(moves, myPosition, r + 1, c);
-                    }
-                    if (c != 1 && board.getPiece(new ChessPosition(r+1, c-1)) != null
-                            && (board.getPiece(new ChessPosition(r+1, c-1)).getTeamColor() == ChessGame.TeamColor.BLACK)) {
-                        promoteMoves(moves, myPosition, r + 1, c - 1);
-                    }
-                    if (c != 8 && board.getPiece(new ChessPosition(r+1, c+1)) != null
-                            && (board.getPiece(new ChessPosition(r+1, c+1)).getTeamColor() == ChessGame.TeamColor.BLACK)) {
-                        promoteMoves(moves, myPosition, r + 1, c + 1);
-                    }
-                }
-            }
-            if (piece.getTeamColor() == ChessGame.TeamColor.BLACK) { //moves for black pawn
-                if (r >= 3) { //single space moves and captures
-                    if (board.getPiece(new ChessPosition(r - 1, c)) == null) {
-                        moves.add(new ChessMove(myPosition, new ChessPosition(r - 1, c), null));
-                    }
-                    if (c != 1 && board.getPiece(new ChessPosition(r - 1, c - 1)) != null
-                            && (board.getPiece(new ChessPosition(r - 1, c - 1)).getTeamColor() == ChessGame.TeamColor.WHITE)) {
-                        moves.add(new ChessMove(myPosition, new ChessPosition(r - 1, c - 1), null));
-                    }
-
-                    if (c != 8 && board.getPiece(new ChessPosition(r - 1, c + 1)) != null
-                            && (board.getPiece(new ChessPosition(r - 1, c + 1)).getTeamColor() == ChessGame.TeamColor.WHITE)) {
-                        moves.add(new ChessMove(myPosition, new ChessPosition(r - 1, c + 1), null));
-                    }
-                }
-                if (r == 7 && board.getPiece(new ChessPosition(r - 2, c)) == null
-                        && board.getPiece(new ChessPosition(r - 1, c)) == null) { //double space move
-                    moves.add(new ChessMove(myPosition, new ChessPosition(r - 2, c), null));
-                }
+        MoveList moves = new MoveList(32);
+        generateMoves(board, myPosition, moves);
+        return moves.toChessMoves(new ArrayList<>(moves.size()));
+    }
 
-                if (r == 2) { //promotion moves and promotion captures
-                    if (board.getPiece(new ChessPosition(r - 1, c)) == null) {
-                        promoteMoves(moves, myPosition, r - 1, c);
-                    }
-                    if (c != 1 && board.getPiece(new ChessPosition(r - 1, c - 1)) != null
-                            && (board.getPiece(new ChessPosition(r - 1, c - 1)).getTeamColor() == ChessGame.TeamColor.WHITE)) {
-                        promoteMoves(moves, myPosition, r - 1, c - 1);
-                    }
-                    if (c != 8 && board.getPiece(new ChessPosition(r - 1, c + 1)) != null
-                            && (board.getPiece(new ChessPosition(r - 1, c + 1)).getTeamColor() == ChessGame.TeamColor.WHITE)) {
-                        promoteMoves(moves, myPosition, r - 1, c + 1);
-                    }
-                }
-            }
+    /**
+     * Adds the moves this piece could make from {@code myPosition} to {@code moves},
+     * with the same rules as {@link #pieceMoves}
+     */
+    public void generateMoves(ChessBoard board, ChessPosition myPosition, MoveList moves) {
+        int from = Bitboards.square(myPosition);
+        if (type == PieceType.PAWN) {
+            addPawnMoves(moves, from, pawnTargets(board, pieceColor, from));
+            return;
         }
-        return moves;
+        long targets = Attacks.of(type, pieceColor, from, board.occupancy());
+        addMoves(moves, from, targets & ~board.occupancy(pieceColor));
     }
 
-    private static void promoteMoves(Collection<ChessMove> moves, ChessPosition myPosition, int r, int c) {
-        moves.add(new ChessMove(myPosition, new ChessPosition(r, c), PieceType.ROOK));
-        moves.add(new ChessMove(myPosition, new ChessPosition(r, c), PieceType.BISHOP));
-        moves.add(new ChessMove(myPosition, new ChessPosition(r, c), PieceType.QUEEN));
-        moves.add(new ChessMove(myPosition, new ChessPosition(r, c), PieceType.KNIGHT));
+    /**
+     * @return the squares a pawn of the given color on {@code from} can push to
+     * or capture on, ignoring en passant
+     */
+    static long pawnTargets(ChessBoard board, ChessGame.TeamColor color, int from) {
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        int forward = white ? 8 : -8;
+        int one = from + forward;
+        if (one < 0 || one >= 64) { //pawn on its last row has no moves
+            return 0L;
+        }
+        long occupied = board.occupancy();
+        long targets = 0L;
+        if ((occupied & Bitboards.bit(one)) == 0) { //single and double space moves
+            targets |= Bitboards.bit(one);
+            int two = one + forward;
+            if (Bitboards.row(from) == (white ? 2 : 7) && (occupied & Bitboards.bit(two)) == 0) {
+                targets |= Bitboards.bit(two);
+            }
+        }
+        long enemies = board.occupancy(white ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        return targets | (Attacks.pawn(color, from) & enemies); //captures
     }
 
-    private void singleMove(ChessBoard board, ChessPosition myPosition, int[][] directions, Collection<ChessMove> moves) {
-        for (int[]direction: directions) { //loop through each direction
-            int r = myPosition.getRow() + direction[0];
-            int c = myPosition.getColumn() + direction[1];
-            if (r >= 1 && r <= 8 && c >= 1 && c <=8) {
-                ChessPosition targetPosition = new ChessPosition(r, c);
-                ChessPiece targetPiece = board.getPiece(targetPosition);
-                if (targetPiece == null) { //if there is no piece on square add to possible moves
-                    moves.add(new ChessMove(myPosition, targetPosition, null));
-                } else if (targetPiece.getTeamColor() != pieceColor) {
-                    //if there is an enemy on square add to possible moves but stop extra movement past
-                    moves.add(new ChessMove(myPosition, targetPosition, null));
+    /**
+     * Adds a pawn move to each target, expanding moves onto the last row into
+     * every promotion choice
+     */
+    static void addPawnMoves(MoveList moves, int from, long targets) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (((Bitboards.RANK_1 | Bitboards.RANK_8) & Bitboards.bit(to)) != 0) {
+                for (PieceType promotion : PROMOTIONS) {
+                    moves.add(from, to, promotion);
                 }
+            } else {
+                moves.add(from, to, null);
             }
         }
     }
 
-    private void repeatMovement(ChessBoard board, ChessPosition myPosition, int[][] directions, Collection<ChessMove> moves) {
-        for (int[]direction: directions) { //loop through each direction
-            int r = myPosition.getRow() + direction[0];
-            int c = myPosition.getColumn() + direction[1];
-            while (r >= 1 && r <= 8 && c >= 1 && c <=8) {
-                ChessPosition targetPosition = new ChessPosition(r, c);
-                ChessPiece targetPiece = board.getPiece(targetPosition);
-                if (targetPiece == null) { //if there is no piece on square add to possible moves
-                    moves.add(new ChessMove(myPosition, targetPosition, null));
-                } else if (targetPiece.getTeamColor() != pieceColor) {
-                    //if there is an enemy on square add to possible moves but stop extra movement past
-                    moves.add(new ChessMove(myPosition, targetPosition, null));
-                    break;
-                } else if (targetPiece.getTeamColor() == pieceColor) { //if there's a teammate on square stop movement in direction
-                    break;
-                }
-                r+=direction[0];
-                c+=direction[1];
-            }
+    static void addMoves(MoveList moves, int from, long targets) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            moves.add(from, to, null);
         }
     }
 }
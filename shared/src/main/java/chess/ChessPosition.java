@@ -10,6 +10,14 @@ import java.util.Objects;
  */
 public class ChessPosition {
 
+    private static final ChessPosition[] CANONICAL = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            CANONICAL[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -18,6 +26,24 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * @return the shared instance for an on-board position, or a new one for
+     * coordinates off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return CANONICAL[(row - 1) * 8 + (col - 1)];
+    }
+
+    /**
+     * @return the shared instance for a square index (see {@link Bitboards})
+     */
+    public static ChessPosition of(int square) {
+        return CANONICAL[square];
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -34,6 +60,13 @@ public class ChessPosition {
         return col;
     }
 
+    /**
+     * @return the square in coordinate notation, such as "e4"
+     */
+    public String toCoordinate() {
+        return "" + (char) ('a' + col - 1) + row;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -0,0 +1,203 @@
+package chess;
+
+/**
+ * Generates strictly legal moves for one side of a position.
+ * <p>
+ * Checkers and absolutely pinned pieces are worked out once when the generator
+ * is created. Every move is then filtered with masks instead of being tried on
+ * the board: in single check only captures of the checker or blocks are kept,
+ * in double check only king moves, and a pinned piece may only move along its
+ * pin line. En passant gets a full occupancy test because removing two pawns
+ * from one rank can uncover a check that no pin mask sees.
+ */
+public final class MoveGenerator {
+
+    private final ChessGame game;
+    private final ChessBoard board;
+    private final ChessGame.TeamColor us;
+    private final ChessGame.TeamColor them;
+    private final long ours;
+    private final long occupied;
+    private final int king;
+    private final long checkers;
+    private final long pinned;
+    private final long checkMask;
+
+    public MoveGenerator(ChessGame game, ChessGame.TeamColor color) {
+        this.game = game;
+        this.board = game.getBoard();
+        this.us = color;
+        this.them = (color == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        this.ours = board.occupancy(us);
+        this.occupied = board.occupancy();
+
+        long kingBits = board.pieces(us, ChessPiece.PieceType.KING);
+        if (kingBits == 0) { //nothing to keep safe, every pseudo-legal move is allowed
+            king = -1;
+            checkers = 0L;
+            pinned = 0L;
+            checkMask = ~0L;
+            return;
+        }
+        king = Long.numberOfTrailingZeros(kingBits);
+        checkers = Attacks.attackersTo(board, king, them, occupied);
+        pinned = findPinned();
+
+        if (checkers == 0) {
+            checkMask = ~0L;
+        } else if (Long.bitCount(checkers) == 1) { //capture the checker or step in between
+            checkMask = checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+        } else { //double check, only the king can move
+            checkMask = 0L;
+        }
+    }
+
+    /**
+     * @return whether this side has a king on the board
+     */
+    public boolean hasKing() {
+        return king >= 0;
+    }
+
+    public boolean inCheck() {
+        return checkers != 0;
+    }
+
+    /**
+     * @return the enemy pieces currently giving check
+     */
+    public long checkers() {
+        return checkers;
+    }
+
+    /**
+     * @return our pieces that cannot leave the line between our king and an enemy slider
+     */
+    public long pinned() {
+        return pinned;
+    }
+
+    /**
+     * Adds every legal move for this side to {@code moves}
+     */
+    public void generate(MoveList moves) {
+        long pieces = ours;
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            generate(from, moves);
+        }
+    }
+
+    /**
+     * Adds the legal moves of the piece on {@code from} to {@code moves}
+     */
+    public void generate(int from, MoveList moves) {
+        ChessPiece piece = board.pieceAt(from);
+        if (piece == null || piece.getTeamColor() != us) {
+            return;
+        }
+        ChessPiece.PieceType type = piece.getPieceType();
+        if (type == ChessPiece.PieceType.KING) {
+            kingMoves(from, moves);
+            return;
+        }
+
+        long allowed = checkMask;
+        if ((pinned & Bitboards.bit(from)) != 0) {
+            allowed &= Attacks.line(king, from);
+        }
+        if (type == ChessPiece.PieceType.PAWN) {
+            pawnMoves(from, allowed, moves);
+            return;
+        }
+        ChessPiece.addMoves(moves, from, Attacks.of(type, us, from, occupied) & ~ours & allowed);
+    }
+
+    private long findPinned() {
+        long queens = board.pieces(them, ChessPiece.PieceType.QUEEN);
+        long snipers = (Attacks.rook(king, 0L) & (board.pieces(them, ChessPiece.PieceType.ROOK) | queens))
+                | (Attacks.bishop(king, 0L) & (board.pieces(them, ChessPiece.PieceType.BISHOP) | queens));
+        long result = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between(king, sniper) & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & ours) != 0) {
+                result |= blockers;
+            }
+        }
+        return result;
+    }
+
+    private void kingMoves(int from, MoveList moves) {
+        // in check, sliders see through the square the king is leaving; otherwise
+        // no slider's line runs through the king and the board's map will do
+        long danger = (checkers == 0)
+                ? board.attackedSquares(them)
+                : Attacks.attackedBy(board, them, occupied & ~Bitboards.bit(from));
+        ChessPiece.addMoves(moves, from, Attacks.king(from) & ~ours & ~danger);
+        castlingMoves(from, moves);
+    }
+
+    private void castlingMoves(int from, MoveList moves) {
+        int homeRow = (us == ChessGame.TeamColor.WHITE) ? 1 : 8;
+        if (from != Bitboards.square(homeRow, 5) || checkers != 0) {
+            return;
+        }
+        if (game.castlingAllowed(us, true)
+                && hasOwnRook(Bitboards.square(homeRow, 8))
+                && (occupied & squares(homeRow, 6, 7)) == 0
+                && (board.attackedSquares(them) & squares(homeRow, 6, 7)) == 0) {
+            moves.add(from, Bitboards.square(homeRow, 7), null);
+        }
+        if (game.castlingAllowed(us, false)
+                && hasOwnRook(Bitboards.square(homeRow, 1))
+                && (occupied & squares(homeRow, 2, 4)) == 0
+                && (board.attackedSquares(them) & squares(homeRow, 3, 4)) == 0) {
+            moves.add(from, Bitboards.square(homeRow, 3), null);
+        }
+    }
+
+    private boolean hasOwnRook(int square) {
+        return (board.pieces(us, ChessPiece.PieceType.ROOK) & Bitboards.bit(square)) != 0;
+    }
+
+    private static long squares(int row, int fromCol, int toCol) {
+        long bits = 0L;
+        for (int col = fromCol; col <= toCol; col++) {
+            bits |= Bitboards.bit(Bitboards.square(row, col));
+        }
+        return bits;
+    }
+
+    private void pawnMoves(int from, long allowed, MoveList moves) {
+        ChessPiece.addPawnMoves(moves, from, ChessPiece.pawnTargets(board, us, from) & allowed);
+        enPassantMove(from, (us == ChessGame.TeamColor.WHITE) ? 8 : -8, moves);
+    }
+
+    private void enPassantMove(int from, int forward, MoveList moves) {
+        ChessPosition target = game.getEnPassantTarget();
+        if (target == null) {
+            return;
+        }
+        int to = Bitboards.square(target);
+        if ((occupied & Bitboards.bit(to)) != 0
+                || Bitboards.row(to) != Bitboards.row(from + forward)
+                || Math.abs(Bitboards.column(to) - Bitboards.column(from)) != 1) {
+            return;
+        }
+        int captured = to - forward;
+        if ((board.pieces(them, ChessPiece.PieceType.PAWN) & Bitboards.bit(captured)) == 0) {
+            return;
+        }
+        if (king >= 0) {
+            // both pawns leave their squares, so test the king against the resulting occupancy
+            long after = (occupied & ~Bitboards.bit(from) & ~Bitboards.bit(captured)) | Bitboards.bit(to);
+            if ((Attacks.attackersTo(board, king, them, after) & ~Bitboards.bit(captured)) != 0) {
+                return;
+            }
+        }
+        moves.add(from, to, null);
+    }
+}
@@ -0,0 +1,106 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A growable list of moves packed into ints, meant to be cleared and reused.
+ * <p>
+ * Each move is {@code from | to << 6 | promotion << 12}, with the squares as
+ * {@link Bitboards} indexes and promotion 0 for none or the promoted
+ * {@link ChessPiece.PieceType} ordinal plus one.
+ */
+public final class MoveList {
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(64);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[Math.max(capacity, 1)];
+    }
+
+    public static int pack(int from, int to, ChessPiece.PieceType promotion) {
+        return from | (to << 6) | ((promotion == null ? 0 : promotion.ordinal() + 1) << 12);
+    }
+
+    public static int pack(ChessMove move) {
+        return pack(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece());
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @return the promotion piece of a packed move, or null if it is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int code = move >>> 12;
+        return code == 0 ? null : TYPES[code - 1];
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(from(move), to(move), promotion(move));
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public void add(int from, int to, ChessPiece.PieceType promotion) {
+        add(pack(from, to, promotion));
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds every move in this list to {@code out} as a {@link ChessMove}
+     */
+    public <T extends Collection<ChessMove>> T toChessMoves(T out) {
+        for (int i = 0; i < size; i++) {
+            out.add(toChessMove(moves[i]));
+        }
+        return out;
+    }
+}
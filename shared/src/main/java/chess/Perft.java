@@ -0,0 +1,194 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Counts the leaf nodes of the legal move tree below a position, the standard
+ * way to check a move generator against published totals and to measure its
+ * speed.
+ * <p>
+ * Each root move is counted as its own task on a {@link ForkJoinPool}, on a
+ * private copy of the game. Below the root, moves are played and taken back in
+ * place. An optional transposition table, shared by all tasks, remembers the
+ * count below each position and depth so repeated positions are only walked once.
+ * <p>
+ * Run {@code chess.Perft <depth> [divide] [hash <entries>] [fen <fen>]} for
+ * counts from the given position, or the starting position without one.
+ */
+public final class Perft {
+
+    private final ForkJoinPool pool;
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * Creates a perft runner on the common pool without a transposition table
+     */
+    public Perft() {
+        this(ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * @param pool        where root moves are counted
+     * @param hashEntries size of the transposition table, rounded down to a
+     *                    power of two; 0 turns it off
+     */
+    public Perft(ForkJoinPool pool, int hashEntries) {
+        if (hashEntries < 0) {
+            throw new IllegalArgumentException("hashEntries must not be negative");
+        }
+        this.pool = pool;
+        int size = hashEntries == 0 ? 0 : Integer.highestOneBit(hashEntries);
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the number of leaf nodes {@code depth} plies below the game's
+     * position, with the team to move moving first. The game is not changed.
+     */
+    public long count(ChessGame game, int depth) {
+        if (depth <= 0) {
+            return 1;
+        }
+        long nodes = 0;
+        for (long subtotal : divide(game, depth).values()) {
+            nodes += subtotal;
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the leaf node count below each legal root move, in generation
+     * order. Comparing these against another engine's narrows a wrong total
+     * down to the move that causes it.
+     */
+    public Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        MoveList rootMoves = new MoveList();
+        game.generateMoves(game.getTeamTurn(), rootMoves);
+
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>(rootMoves.size());
+        for (int i = 0; i < rootMoves.size(); i++) {
+            int move = rootMoves.get(i);
+            ChessGame copy = game.copy();
+            tasks.add(pool.submit(() -> {
+                copy.doMove(move);
+                return search(copy, depth - 1, newLists(depth));
+            }));
+        }
+
+        Map<ChessMove, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < rootMoves.size(); i++) {
+            result.put(MoveList.toChessMove(rootMoves.get(i)), tasks.get(i).join());
+        }
+        return result;
+    }
+
+    private long search(ChessGame game, int depth, MoveList[] lists) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = lists[depth];
+        moves.clear();
+        game.generateMoves(game.getTeamTurn(), moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+
+        long key = game.positionKey();
+        long cached = probe(key, depth);
+        if (cached >= 0) {
+            return cached;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.doMove(moves.get(i));
+            nodes += search(game, depth - 1, lists);
+            game.undoMove();
+        }
+        store(key, depth, nodes);
+        return nodes;
+    }
+
+    private static MoveList[] newLists(int depth) {
+        MoveList[] lists = new MoveList[depth + 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new MoveList();
+        }
+        return lists;
+    }
+
+    // Entries are written without locks. The key is stored xor'ed with the data,
+    // so an entry torn by two threads writing at once fails the check in probe
+    // instead of returning another position's count.
+
+    private long probe(long key, int depth) {
+        if (keys.length == 0) {
+            return -1;
+        }
+        int index = (int) key & mask;
+        long entry = data[index];
+        if ((keys[index] ^ entry) != key || (entry & 0xFF) != depth) {
+            return -1;
+        }
+        return entry >>> 8;
+    }
+
+    private void store(long key, int depth, long nodes) {
+        if (keys.length == 0) {
+            return;
+        }
+        int index = (int) key & mask;
+        long entry = (nodes << 8) | depth;
+        data[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: chess.Perft <depth> [divide] [hash <entries>] [fen <fen>]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        boolean divide = false;
+        int hashEntries = 0;
+        ChessGame game = new ChessGame();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("divide")) {
+                divide = true;
+            } else if (args[i].equals("hash") && i + 1 < args.length) {
+                hashEntries = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("fen")) {
+                game = ChessGame.fromFen(String.join(" ", Arrays.copyOfRange(args, i + 1, args.length)));
+                break;
+            }
+        }
+
+        Perft perft = new Perft(ForkJoinPool.commonPool(), hashEntries);
+        long start = System.nanoTime();
+        long nodes;
+        if (divide) {
+            nodes = 0;
+            for (Map.Entry<ChessMove, Long> entry : perft.divide(game, depth).entrySet()) {
+                System.out.printf("%s: %d%n", entry.getKey().toCoordinates(), entry.getValue());
+                nodes += entry.getValue();
+            }
+        } else {
+            nodes = perft.count(game, depth);
+        }
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        System.out.printf("nodes %d, %d ms, %d nodes/s%n", nodes, nanos / 1_000_000, nodes * 1_000_000_000L / nanos);
+    }
+}
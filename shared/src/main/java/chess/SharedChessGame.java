@@ -0,0 +1,159 @@
+package chess;
+
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A game that one writer plays while any number of threads read it, such as
+ * observers rendering the board or asking for move highlights.
+ * <p>
+ * Readers never see the live game. Each move is played on a private game
+ * under the write lock and then published as a {@link ChessGame#snapshot()
+ * snapshot}, together with a sequence number and the move itself. Reads take
+ * the three under an optimistic stamp and only fall back to the read lock
+ * when a move was published in the meantime, so while nobody moves a read
+ * costs a few field loads and never blocks. Everything a reader gets back is
+ * a snapshot and stays valid however long it is kept.
+ */
+public final class SharedChessGame {
+
+    /**
+     * The game as published after a move
+     *
+     * @param game     an unchangeable snapshot of the game
+     * @param sequence the number of moves and resets published so far, 0 for the starting game
+     * @param lastMove the move that led to this state, or null for a {@link #reset(ChessGame) reset}
+     */
+    public record State(ChessGame game, long sequence, ChessMove lastMove) {
+    }
+
+    private final StampedLock lock = new StampedLock();
+    // the writer's game, only touched under the write lock
+    private ChessGame game;
+    private ChessGame snapshot;
+    private long sequence;
+    private ChessMove lastMove;
+
+    public SharedChessGame(ChessGame game) {
+        this.game = game.copy();
+        this.snapshot = this.game.snapshot();
+    }
+
+    /**
+     * @return the latest published state, read consistently
+     */
+    public State current() {
+        long stamp = lock.tryOptimisticRead();
+        ChessGame game = snapshot;
+        long sequence = this.sequence;
+        ChessMove lastMove = this.lastMove;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                game = snapshot;
+                sequence = this.sequence;
+                lastMove = this.lastMove;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return new State(game, sequence, lastMove);
+    }
+
+    /**
+     * @return an unchangeable snapshot of the game as last published
+     */
+    public ChessGame snapshot() {
+        long stamp = lock.tryOptimisticRead();
+        ChessGame game = snapshot;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                game = snapshot;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return game;
+    }
+
+    public ChessGame.TeamColor getTeamTurn() {
+        return snapshot().getTeamTurn();
+    }
+
+    /**
+     * @return the board as last published, which cannot be changed
+     */
+    public ChessBoard getBoard() {
+        return snapshot().getBoard();
+    }
+
+    public Collection<ChessMove> validMoves(ChessPosition startPosition) {
+        return snapshot().validMoves(startPosition);
+    }
+
+    public ChessGame.GameStatus status(ChessGame.TeamColor teamColor) {
+        return snapshot().status(teamColor);
+    }
+
+    /**
+     * Plays a move and publishes the result
+     *
+     * @return the state published for the move
+     * @throws InvalidMoveException if the move is illegal; nothing is published then
+     */
+    public State makeMove(ChessMove move) throws InvalidMoveException {
+        long stamp = lock.writeLock();
+        try {
+            game.makeMove(move);
+            return publish(move);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Plays a move for the given team and publishes the result. The turn is
+     * checked under the write lock, so a move checked against an older state
+     * cannot be played for the wrong side.
+     *
+     * @return the state published for the move
+     * @throws InvalidMoveException if it is not the team's turn or the move is
+     *                              illegal; nothing is published then
+     */
+    public State makeMove(ChessMove move, ChessGame.TeamColor team) throws InvalidMoveException {
+        long stamp = lock.writeLock();
+        try {
+            if (game.getTeamTurn() != team) {
+                throw new InvalidMoveException("wrong turn");
+            }
+            game.makeMove(move);
+            return publish(move);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces the whole game, for instance with one loaded from storage
+     *
+     * @return the state published for the new game
+     */
+    public State reset(ChessGame replacement) {
+        ChessGame copy = replacement.copy();
+        long stamp = lock.writeLock();
+        try {
+            game = copy;
+            return publish(null);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private State publish(ChessMove move) {
+        snapshot = game.snapshot();
+        sequence++;
+        lastMove = move;
+        return new State(snapshot, sequence, lastMove);
+    }
+}
@@ -0,0 +1,81 @@
+package chess;
+
+/**
+ * Random keys for Zobrist hashing of chess positions.
+ * <p>
+ * The keys come from a SplitMix64 stream with a fixed seed, so a position
+ * hashes to the same value on every JVM and after any serialization round
+ * trip. Keys may therefore be stored and compared across runs.
+ */
+public final class Zobrist {
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    private static final long[][] PIECES = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long SIDE;
+
+    static {
+        long[] state = {0x2545F4914F6CDD1DL};
+        for (long[] squares : PIECES) {
+            for (int square = 0; square < 64; square++) {
+                squares[square] = next(state);
+            }
+        }
+        long[] rightKeys = {next(state), next(state), next(state), next(state)};
+        for (int rights = 0; rights < 16; rights++) {
+            for (int bit = 0; bit < 4; bit++) {
+                if ((rights & (1 << bit)) != 0) {
+                    CASTLING[rights] ^= rightKeys[bit];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT[file] = next(state);
+        }
+        SIDE = next(state);
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return PIECES[ChessBoard.pieceIndex(color, type)][square];
+    }
+
+    static long piece(int pieceIndex, int square) {
+        return PIECES[pieceIndex][square];
+    }
+
+    /**
+     * @return the key folded in when black is to move
+     */
+    public static long blackToMove() {
+        return SIDE;
+    }
+
+    /**
+     * @param rights a combination of the castling right flags in this class
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * @param column the en passant column, 1 through 8
+     */
+    public static long enPassant(int column) {
+        return EN_PASSANT[column - 1];
+    }
+
+    private static long next(long[] state) {
+        long z = (state[0] += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
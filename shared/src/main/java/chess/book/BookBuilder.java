@@ -0,0 +1,87 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the openings of finished games into a Polyglot book.
+ * <p>
+ * Each move the winner played scores 2 and each move of a drawn game scores 1;
+ * the loser's moves are not recorded. Positions reached by transposition pool
+ * their scores. When a position's scores outgrow the 16-bit weight field they
+ * are scaled down together.
+ */
+public final class BookBuilder {
+
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final PolyglotKeys keys;
+    private final int maxPlies;
+    private final Map<Long, Map<Integer, Long>> scores = new HashMap<>();
+
+    /**
+     * @param maxPlies how many moves of each game to record, counting both teams
+     */
+    public BookBuilder(PolyglotKeys keys, int maxPlies) {
+        this.keys = keys;
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Records a game played from the starting position
+     *
+     * @param winner the team that won, or null for a draw
+     * @throws InvalidMoveException if a move is illegal, in which case nothing
+     *                              of the game is recorded
+     */
+    public void addGame(List<ChessMove> moves, ChessGame.TeamColor winner) throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        List<long[]> played = new ArrayList<>();
+        for (int ply = 0; ply < moves.size() && ply < maxPlies; ply++) {
+            ChessMove move = moves.get(ply);
+            if (winner == null || winner == game.getTeamTurn()) {
+                played.add(new long[]{keys.key(game), OpeningBook.encodeMove(game, move), winner == null ? 1 : 2});
+            }
+            game.makeMove(move);
+        }
+        for (long[] entry : played) {
+            scores.computeIfAbsent(entry[0], key -> new HashMap<>()).merge((int) entry[1], entry[2], Long::sum);
+        }
+    }
+
+    /**
+     * Writes the book, sorted by key as Polyglot requires
+     */
+    public void write(Path file) throws IOException {
+        List<Long> positions = new ArrayList<>(scores.keySet());
+        positions.sort(Long::compareUnsigned);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+             DataOutputStream data = new DataOutputStream(out)) {
+            for (long key : positions) {
+                List<Map.Entry<Integer, Long>> moves = new ArrayList<>(scores.get(key).entrySet());
+                moves.sort(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()));
+                long top = moves.get(0).getValue();
+                for (Map.Entry<Integer, Long> move : moves) {
+                    long weight = (top <= MAX_WEIGHT) ? move.getValue() : Math.max(1, move.getValue() * MAX_WEIGHT / top);
+                    data.writeLong(key);
+                    data.writeShort(move.getKey());
+                    data.writeShort((int) weight);
+                    data.writeInt(0);
+                }
+            }
+        }
+    }
+}
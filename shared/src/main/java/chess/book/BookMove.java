@@ -0,0 +1,10 @@
+package chess.book;
+
+import chess.ChessMove;
+
+/**
+ * A move found in an opening book, with its relative weight among the moves
+ * stored for the same position
+ */
+public record BookMove(ChessMove move, int weight) {
+}
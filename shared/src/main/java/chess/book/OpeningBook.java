@@ -0,0 +1,171 @@
+package chess.book;
+
+import chess.Bitboards;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reads an opening book in the Polyglot {@code .bin} format.
+ * <p>
+ * A book is a sorted array of 16 byte big-endian entries: the position key
+ * (see {@link PolyglotKeys}), the move, its weight and 4 bytes of learning data
+ * that are ignored here. The file is memory-mapped rather than read, so opening
+ * a book of any size is instant, only the pages a lookup touches are ever
+ * loaded, and a lookup is a binary search costing a few dozen reads. A book
+ * can be shared by any number of threads.
+ */
+public final class OpeningBook {
+
+    static final int ENTRY_BYTES = 16;
+    // entries per mapping; a single mapping is limited to 2 GB
+    private static final int CHUNK_ENTRIES = 1 << 26;
+    private static final ChessPiece.PieceType[] PROMOTIONS = {null, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN};
+
+    private final ByteBuffer[] chunks;
+    private final long size;
+    private final PolyglotKeys keys;
+
+    private OpeningBook(ByteBuffer[] chunks, long size, PolyglotKeys keys) {
+        this.chunks = chunks;
+        this.size = size;
+        this.keys = keys;
+    }
+
+    /**
+     * Maps a book file
+     *
+     * @param keys the random table the book was built with
+     * @throws IOException if the file cannot be read or is not a whole number of entries
+     */
+    public static OpeningBook open(Path file, PolyglotKeys keys) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes % ENTRY_BYTES != 0) {
+                throw new IOException("not a Polyglot book: " + file);
+            }
+            long chunkBytes = (long) CHUNK_ENTRIES * ENTRY_BYTES;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((bytes + chunkBytes - 1) / chunkBytes)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * chunkBytes;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkBytes, bytes - start));
+            }
+            return new OpeningBook(chunks, bytes / ENTRY_BYTES, keys);
+        }
+    }
+
+    /**
+     * @return the number of entries in the book
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the legal book moves of the game's position, heaviest first, or an
+     * empty list if the position is not in the book. Moves with weight 0 are left out.
+     */
+    public List<BookMove> lookup(ChessGame game) {
+        long key = keys.key(game);
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<BookMove> moves = new ArrayList<>();
+        for (long i = low; i < size && keyAt(i) == key; i++) {
+            ByteBuffer chunk = chunks[(int) (i / CHUNK_ENTRIES)];
+            int offset = (int) (i % CHUNK_ENTRIES) * ENTRY_BYTES;
+            int weight = chunk.getShort(offset + 10) & 0xFFFF;
+            ChessMove move = decodeMove(game, chunk.getShort(offset + 8) & 0xFFFF);
+            if (weight > 0 && move != null && game.isLegal(move)) {
+                moves.add(new BookMove(move, weight));
+            }
+        }
+        moves.sort(Comparator.comparingInt(BookMove::weight).reversed());
+        return moves;
+    }
+
+    /**
+     * @return a book move of the game's position, chosen at random in proportion
+     * to the weights, or null if the position is not in the book
+     */
+    public ChessMove pick(ChessGame game, Random random) {
+        List<BookMove> moves = lookup(game);
+        int total = 0;
+        for (BookMove move : moves) {
+            total += move.weight();
+        }
+        if (total == 0) {
+            return null;
+        }
+        int choice = random.nextInt(total);
+        for (BookMove move : moves) {
+            choice -= move.weight();
+            if (choice < 0) {
+                return move.move();
+            }
+        }
+        throw new AssertionError("weights changed while picking");
+    }
+
+    private long keyAt(long index) {
+        return chunks[(int) (index / CHUNK_ENTRIES)].getLong((int) (index % CHUNK_ENTRIES) * ENTRY_BYTES);
+    }
+
+    /**
+     * @return the Polyglot form of a move: to file, to row, from file and from
+     * row in 3 bits each, then the promotion piece. Castling is written as the
+     * king taking its own rook.
+     */
+    static int encodeMove(ChessGame game, ChessMove move) {
+        int from = Bitboards.square(move.getStartPosition());
+        int to = Bitboards.square(move.getEndPosition());
+        ChessPiece piece = game.getBoard().pieceAt(from);
+        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            to = (to > from) ? from + 3 : from - 4;
+        }
+        int promotion = 0;
+        for (int i = 1; i < PROMOTIONS.length; i++) {
+            if (PROMOTIONS[i] == move.getPromotionPiece()) {
+                promotion = i;
+            }
+        }
+        return to | (from << 6) | (promotion << 12);
+    }
+
+    /**
+     * @return the move written in Polyglot form, or null if it cannot be a move
+     */
+    static ChessMove decodeMove(ChessGame game, int move) {
+        int to = move & 63;
+        int from = (move >>> 6) & 63;
+        int promotion = (move >>> 12) & 7;
+        if (promotion >= PROMOTIONS.length) {
+            return null;
+        }
+        ChessPiece piece = game.getBoard().pieceAt(from);
+        if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING
+                && (from & 7) == 4 && (to >>> 3) == (from >>> 3) && ((to & 7) == 0 || (to & 7) == 7)) {
+            to = ((to & 7) == 7) ? from + 2 : from - 2;
+        }
+        return ChessMove.of(from, to, PROMOTIONS[promotion]);
+    }
+}
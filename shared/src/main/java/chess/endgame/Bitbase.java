@@ -0,0 +1,92 @@
+package chess.endgame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One bit per position of an {@link Ending}, set when the strong side wins:
+ * first for every position with the strong side to move, then for every
+ * position with the weak side to move.
+ * <p>
+ * The file form is a 16 byte header (magic, ending, size, unused) followed by
+ * the bits, so a loaded bitbase is simply a read-only mapping of its file and
+ * lookups read straight from the page cache. Bitbases never change once built
+ * and can be probed from any number of threads.
+ */
+public final class Bitbase {
+
+    private static final int MAGIC = 0x43424231; // "CBB1"
+    private static final int HEADER = 16;
+
+    private final Ending ending;
+    private final ByteBuffer data;
+    private final int sideBytes;
+
+    private Bitbase(Ending ending, ByteBuffer data) {
+        this.ending = ending;
+        this.data = data;
+        this.sideBytes = (ending.size() + 7) >>> 3;
+    }
+
+    /**
+     * Solves the ending from scratch. Pawn endings solve the queen and rook
+     * endings their promotions lead to first.
+     */
+    public static Bitbase generate(Ending ending) {
+        long[][] won = new BitbaseGenerator(ending).solve();
+        int sideBytes = (ending.size() + 7) >>> 3;
+        ByteBuffer data = ByteBuffer.allocate(HEADER + 2 * sideBytes);
+        data.putInt(MAGIC).putInt(ending.ordinal()).putInt(ending.size()).putInt(0);
+        for (long[] side : won) {
+            for (int i = 0; i < sideBytes; i++) {
+                data.put((byte) (side[i >>> 3] >>> ((i & 7) * 8)));
+            }
+        }
+        return new Bitbase(ending, data.clear());
+    }
+
+    /**
+     * Maps a file written by {@link #write(Path)}
+     *
+     * @throws IOException if the file cannot be read or is not a bitbase
+     */
+    public static Bitbase load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < HEADER || data.getInt(0) != MAGIC
+                    || data.getInt(4) < 0 || data.getInt(4) >= Ending.values().length) {
+                throw new IOException("not a bitbase: " + file);
+            }
+            Ending ending = Ending.values()[data.getInt(4)];
+            if (data.getInt(8) != ending.size() || data.capacity() != HEADER + 2L * ((ending.size() + 7) >>> 3)) {
+                throw new IOException("bitbase size does not match " + ending + ": " + file);
+            }
+            return new Bitbase(ending, data);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer contents = data.duplicate().clear();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+
+    public Ending ending() {
+        return ending;
+    }
+
+    /**
+     * @return whether the strong side wins the position at {@code index} of the ending
+     */
+    boolean isWin(int index, boolean strongToMove) {
+        int offset = HEADER + (strongToMove ? 0 : sideBytes) + (index >>> 3);
+        return ((data.get(offset) >>> (index & 7)) & 1) != 0;
+    }
+}
@@ -0,0 +1,207 @@
+package chess.endgame;
+
+import chess.Attacks;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Solves one {@link Ending} by retrograde analysis.
+ * <p>
+ * The strong side plays white and the solver only asks whether it wins. First
+ * every checkmate of the weak king is marked won, along with pawn positions
+ * where promoting reaches a won queen or rook ending. Then, working backwards
+ * from each newly won position: every position where the strong side could
+ * have moved into it is won too, and every position where the weak king could
+ * have moved into it is won once all of its moves lead to won positions.
+ * Whatever is never marked is a draw, since the weak side cannot win with a
+ * lone king. Capturing a strong piece always ends in a drawn ending.
+ */
+final class BitbaseGenerator {
+
+    private static final int STRONG = 0;
+    private static final int WEAK = 1;
+
+    private final Ending ending;
+    private final int last;
+    private final ChessPiece.PieceType[] types;
+    private final long[][] won;
+    private final int[] queue;
+    private int head;
+    private int tail;
+    private final Bitbase queenEnding;
+    private final Bitbase rookEnding;
+
+    BitbaseGenerator(Ending ending) {
+        this.ending = ending;
+        last = ending.squareCount() - 1;
+        types = new ChessPiece.PieceType[ending.squareCount()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ending.type(i);
+        }
+        int words = (ending.size() + 63) >>> 6;
+        won = new long[][]{new long[words], new long[words]};
+        queue = new int[2 * ending.size()];
+        queenEnding = ending.hasPawn() ? Bitbase.generate(Ending.KQK) : null;
+        rookEnding = ending.hasPawn() ? Bitbase.generate(Ending.KRK) : null;
+    }
+
+    /**
+     * @return the won bits, strong side to move first
+     */
+    long[][] solve() {
+        int[] squares = new int[ending.squareCount()];
+        for (int index = 0; index < ending.size(); index++) {
+            ending.decode(index, squares);
+            if (!isValid(squares)) {
+                continue;
+            }
+            long occupied = occupancy(squares);
+            boolean weakInCheck = (strongAttacks(squares, occupied) & bit(squares[last])) != 0;
+            if (weakInCheck && weakMoves(squares, occupied) == 0) {
+                markWon(WEAK, index);
+            }
+            if (!weakInCheck && ending.hasPawn() && promotionWins(squares, occupied)) {
+                markWon(STRONG, index);
+            }
+        }
+
+        int[] scratch = new int[ending.squareCount()];
+        while (head < tail) {
+            int entry = queue[head++];
+            ending.decode(entry >>> 1, squares);
+            if ((entry & 1) == WEAK) {
+                markStrongPredecessors(squares);
+            } else {
+                checkWeakPredecessors(squares, scratch);
+            }
+        }
+        return won;
+    }
+
+    /**
+     * Marks every position won where a strong move leads to the weak-to-move position in {@code squares}
+     */
+    private void markStrongPredecessors(int[] squares) {
+        long occupied = occupancy(squares);
+        int weakKing = squares[last];
+        for (int i = 0; i < last; i++) {
+            int to = squares[i];
+            long origins = switch (types[i]) {
+                case KING -> Attacks.king(to) & ~Attacks.king(weakKing);
+                case PAWN -> pawnOrigins(to, occupied);
+                default -> Attacks.of(types[i], ChessGame.TeamColor.WHITE, to, occupied);
+            } & ~occupied;
+            while (origins != 0) {
+                squares[i] = Long.numberOfTrailingZeros(origins);
+                origins &= origins - 1;
+                long before = occupied ^ bit(to) ^ bit(squares[i]);
+                if ((strongAttacks(squares, before) & bit(weakKing)) == 0) {
+                    markWon(STRONG, ending.index(squares));
+                }
+            }
+            squares[i] = to;
+        }
+    }
+
+    /**
+     * Marks the positions won where the weak king moved into the strong-to-move
+     * position in {@code squares} and no other move escapes
+     */
+    private void checkWeakPredecessors(int[] squares, int[] scratch) {
+        long occupied = occupancy(squares);
+        int weakKing = squares[last];
+        long origins = Attacks.king(weakKing) & ~Attacks.king(squares[0]) & ~occupied;
+        while (origins != 0) {
+            squares[last] = Long.numberOfTrailingZeros(origins);
+            origins &= origins - 1;
+            int index = ending.index(squares);
+            if (!isWon(WEAK, index) && allMovesLose(index, scratch)) {
+                markWon(WEAK, index);
+            }
+        }
+        squares[last] = weakKing;
+    }
+
+    private boolean allMovesLose(int index, int[] squares) {
+        ending.decode(index, squares);
+        long occupied = occupancy(squares);
+        long moves = weakMoves(squares, occupied);
+        if (moves == 0 || (moves & occupied) != 0) {
+            return false; // stalemate (checkmates are already marked), or a capture
+        }
+        while (moves != 0) {
+            squares[last] = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            if (!isWon(STRONG, ending.index(squares))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean promotionWins(int[] squares, long occupied) {
+        int pawn = squares[1];
+        int target = pawn + 8;
+        if ((pawn >>> 3) != 6 || (occupied & bit(target)) != 0) {
+            return false;
+        }
+        int[] promoted = {squares[0], target, squares[last]};
+        return queenEnding.isWin(Ending.KQK.index(promoted), false)
+                || rookEnding.isWin(Ending.KRK.index(promoted), false);
+    }
+
+    private static long pawnOrigins(int to, long occupied) {
+        int row = to >>> 3;
+        long origins = (row >= 2) ? bit(to - 8) : 0L;
+        if (row == 3 && (occupied & bit(to - 8)) == 0) {
+            origins |= bit(to - 16);
+        }
+        return origins;
+    }
+
+    /**
+     * @return the squares the weak king can move to, including captures of undefended pieces
+     */
+    private long weakMoves(int[] squares, long occupied) {
+        int weakKing = squares[last];
+        return Attacks.king(weakKing) & ~strongAttacks(squares, occupied & ~bit(weakKing));
+    }
+
+    private long strongAttacks(int[] squares, long occupied) {
+        long attacks = 0;
+        for (int i = 0; i < last; i++) {
+            attacks |= Attacks.of(types[i], ChessGame.TeamColor.WHITE, squares[i], occupied);
+        }
+        return attacks;
+    }
+
+    private boolean isValid(int[] squares) {
+        if (Long.bitCount(occupancy(squares)) != squares.length) {
+            return false;
+        }
+        return (Attacks.king(squares[0]) & bit(squares[last])) == 0;
+    }
+
+    private static long occupancy(int[] squares) {
+        long occupied = 0;
+        for (int square : squares) {
+            occupied |= bit(square);
+        }
+        return occupied;
+    }
+
+    private static long bit(int square) {
+        return 1L << square;
+    }
+
+    private boolean isWon(int side, int index) {
+        return (won[side][index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void markWon(int side, int index) {
+        if (!isWon(side, index)) {
+            won[side][index >>> 6] |= 1L << index;
+            queue[tail++] = (index << 1) | side;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package chess.endgame;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Answers whether the team to move wins, draws or loses a position covered by
+ * one of a set of {@link Bitbase bitbases}, for adjudicating and annotating games.
+ * <p>
+ * Answers assume best play from both sides and ignore the fifty-move rule;
+ * every covered ending is won well inside it. Run
+ * {@code chess.endgame.Bitbases <directory>} to solve every ending and write
+ * the files {@link #load(Path)} reads.
+ */
+public final class Bitbases {
+
+    public enum Result {
+        WIN,
+        DRAW,
+        LOSS
+    }
+
+    private final Map<Ending, Bitbase> bitbases = new EnumMap<>(Ending.class);
+
+    public Bitbases(Bitbase... bitbases) {
+        for (Bitbase bitbase : bitbases) {
+            this.bitbases.put(bitbase.ending(), bitbase);
+        }
+    }
+
+    /**
+     * Solves every ending in memory
+     */
+    public static Bitbases generate() {
+        Bitbases result = new Bitbases();
+        for (Ending ending : Ending.values()) {
+            result.bitbases.put(ending, Bitbase.generate(ending));
+        }
+        return result;
+    }
+
+    /**
+     * Maps the bitbase files found in {@code directory}. Endings without a file
+     * are simply not covered.
+     */
+    public static Bitbases load(Path directory) throws IOException {
+        Bitbases result = new Bitbases();
+        for (Ending ending : Ending.values()) {
+            Path file = directory.resolve(ending.fileName());
+            if (Files.exists(file)) {
+                result.bitbases.put(ending, Bitbase.load(file));
+            }
+        }
+        return result;
+    }
+
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Bitbase bitbase : bitbases.values()) {
+            bitbase.write(directory.resolve(bitbase.ending().fileName()));
+        }
+    }
+
+    public boolean covers(Ending ending) {
+        return bitbases.containsKey(ending);
+    }
+
+    /**
+     * @return the result for the team to move, or null if no bitbase covers the position
+     */
+    public Result probe(ChessGame game) {
+        return probe(game.getBoard(), game.getTeamTurn());
+    }
+
+    /**
+     * @return the result for {@code toMove}, or null if no bitbase covers the position
+     */
+    public Result probe(ChessBoard board, ChessGame.TeamColor toMove) {
+        int whitePieces = Long.bitCount(board.occupancy(ChessGame.TeamColor.WHITE));
+        int blackPieces = Long.bitCount(board.occupancy(ChessGame.TeamColor.BLACK));
+        if (Math.min(whitePieces, blackPieces) != 1) {
+            return null;
+        }
+        ChessGame.TeamColor strong = (whitePieces > blackPieces) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessGame.TeamColor weak = (strong == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        Ending ending = endingOf(board, strong, Math.max(whitePieces, blackPieces) - 1);
+        Bitbase bitbase = (ending == null) ? null : bitbases.get(ending);
+        if (bitbase == null || board.kingSquare(strong) < 0 || board.kingSquare(weak) < 0) {
+            return null;
+        }
+
+        int[] squares = new int[ending.squareCount()];
+        for (int i = 0; i < squares.length; i++) {
+            ChessGame.TeamColor color = (i == squares.length - 1) ? weak : strong;
+            squares[i] = Long.numberOfTrailingZeros(board.pieces(color, ending.type(i)));
+            if (ending.hasPawn() && strong == ChessGame.TeamColor.BLACK) {
+                squares[i] ^= 56; // play the pawn's side as white
+            }
+        }
+        boolean strongToMove = toMove == strong;
+        if (!bitbase.isWin(ending.index(squares), strongToMove)) {
+            return Result.DRAW;
+        }
+        return strongToMove ? Result.WIN : Result.LOSS;
+    }
+
+    private static Ending endingOf(ChessBoard board, ChessGame.TeamColor strong, int pieceCount) {
+        for (Ending ending : Ending.values()) {
+            ChessPiece.PieceType[] pieces = ending.pieces();
+            boolean matches = pieces.length == pieceCount;
+            for (ChessPiece.PieceType type : pieces) {
+                matches &= board.pieceCount(strong, type) == 1;
+            }
+            if (matches) {
+                return ending;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: chess.endgame.Bitbases <directory>");
+            System.exit(1);
+        }
+        Path directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+        for (Ending ending : Ending.values()) {
+            long start = System.nanoTime();
+            Bitbase bitbase = Bitbase.generate(ending);
+            bitbase.write(directory.resolve(ending.fileName()));
+            System.out.printf("%s: %d positions, %d ms%n", ending, 2L * ending.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package chess.endgame;
+
+import chess.ChessPiece;
+
+/**
+ * The endings covered by {@link Bitbase bitbases}: a king and one or two pieces
+ * against a lone king.
+ * <p>
+ * A position is stored as the squares of the strong king, the strong pieces in
+ * the order listed here and the weak king. Positions that are mirror images of
+ * each other share an index. Without pawns the strong king is turned into the
+ * a1-d1-d4 triangle by any of the eight board symmetries; with a pawn the strong
+ * side is played as white and only the left-right mirror applies, putting the
+ * pawn on files a to d.
+ */
+public enum Ending {
+    KPK(ChessPiece.PieceType.PAWN),
+    KRK(ChessPiece.PieceType.ROOK),
+    KQK(ChessPiece.PieceType.QUEEN),
+    KBNK(ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT);
+
+    // the strong king's squares without pawns, and the pawn's squares with one
+    private static final int KING_LEADS = 10;
+    private static final int PAWN_LEADS = 24;
+    private static final int[] TRIANGLE = {0, 1, 2, 3, 9, 10, 11, 18, 19, 27};
+    private static final int[] PAWN_SQUARES = new int[PAWN_LEADS];
+    private static final int[] LEAD_INDEX = new int[64];
+    // [symmetry][square]: bit 4 transposes, then bit 1 mirrors the files and bit 2 the ranks
+    private static final int[][] SYMMETRIES = new int[8][64];
+    private static final int[] KING_SYMMETRY = new int[64];
+    private static final int MIRROR_FILES = 1;
+
+    static {
+        for (int i = 0; i < PAWN_SQUARES.length; i++) {
+            PAWN_SQUARES[i] = (i / 4 + 1) * 8 + i % 4;
+        }
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            for (int square = 0; square < 64; square++) {
+                int mapped = ((symmetry & 4) != 0) ? ((square & 7) << 3) | (square >>> 3) : square;
+                mapped ^= ((symmetry & 1) != 0) ? 7 : 0;
+                mapped ^= ((symmetry & 2) != 0) ? 56 : 0;
+                SYMMETRIES[symmetry][square] = mapped;
+            }
+        }
+        for (int i = 0; i < TRIANGLE.length; i++) {
+            LEAD_INDEX[TRIANGLE[i]] = i;
+        }
+        for (int square = 0; square < 64; square++) {
+            int symmetry = 0;
+            while (!inTriangle(SYMMETRIES[symmetry][square])) {
+                symmetry++;
+            }
+            KING_SYMMETRY[square] = symmetry;
+        }
+    }
+
+    private final ChessPiece.PieceType[] pieces;
+    private final boolean pawn;
+    private final int size;
+
+    Ending(ChessPiece.PieceType... pieces) {
+        this.pieces = pieces;
+        this.pawn = pieces[0] == ChessPiece.PieceType.PAWN;
+        this.size = (pawn ? PAWN_LEADS : KING_LEADS) << (6 * (pieces.length + 1));
+    }
+
+    /**
+     * @return the strong side's pieces besides its king
+     */
+    public ChessPiece.PieceType[] pieces() {
+        return pieces.clone();
+    }
+
+    /**
+     * @return the number of indexes for each side to move
+     */
+    public int size() {
+        return size;
+    }
+
+    public String fileName() {
+        return name() + ".bitbase";
+    }
+
+    boolean hasPawn() {
+        return pawn;
+    }
+
+    ChessPiece.PieceType type(int slot) {
+        return (slot == 0 || slot == pieces.length + 1) ? ChessPiece.PieceType.KING : pieces[slot - 1];
+    }
+
+    int squareCount() {
+        return pieces.length + 2;
+    }
+
+    /**
+     * @param squares the strong king, the strong pieces and the weak king, with a
+     *                pawn's side playing white
+     */
+    int index(int[] squares) {
+        int lead = pawn ? 1 : 0;
+        int[] map = SYMMETRIES[pawn ? ((squares[1] & 7) > 3 ? MIRROR_FILES : 0) : KING_SYMMETRY[squares[0]]];
+        int index = pawn ? pawnIndex(map[squares[1]]) : LEAD_INDEX[map[squares[0]]];
+        for (int i = 0; i < squares.length; i++) {
+            if (i != lead) {
+                index = (index << 6) | map[squares[i]];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Fills in the squares of the position stored at {@code index}
+     */
+    void decode(int index, int[] squares) {
+        int lead = pawn ? 1 : 0;
+        for (int i = squares.length - 1; i >= 0; i--) {
+            if (i != lead) {
+                squares[i] = index & 63;
+                index >>>= 6;
+            }
+        }
+        squares[lead] = pawn ? PAWN_SQUARES[index] : TRIANGLE[index];
+    }
+
+    private static int pawnIndex(int square) {
+        return ((square >>> 3) - 1) * 4 + (square & 7);
+    }
+
+    private static boolean inTriangle(int square) {
+        int file = square & 7;
+        int row = square >>> 3;
+        return file < 4 && row <= file;
+    }
+}
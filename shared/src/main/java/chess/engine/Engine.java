@@ -0,0 +1,404 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.MoveList;
+import chess.eval.Evaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the best move of a position for hints, computer opponents and game
+ * analysis.
+ * <p>
+ * The search is negamax alpha-beta under iterative deepening, with a
+ * quiescence search over captures and queen promotions at the leaves and a
+ * one-ply extension for moves out of check. Moves are tried in order of the
+ * transposition table's best move, captures by most valuable victim and least
+ * valuable attacker, the two killer moves of the ply and then the history
+ * score of each quiet move. The transposition table keeps its results from one
+ * search to the next until {@link #clear()}.
+ * <p>
+ * An engine runs one search at a time. Searches work on a copy of the game, so
+ * the caller's game (or snapshot) is never touched.
+ */
+public final class Engine {
+
+    static final int MAX_PLY = 64;
+    static final int MATE = 30_000;
+
+    private static final int INFINITY = 32_000;
+    // ordering weight of each PieceType by ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] RANK = {6, 5, 3, 2, 4, 1};
+    private static final int HASH_MOVE_SCORE = 3_000_000;
+    private static final int CAPTURE_SCORE = 2_000_000;
+    private static final int KILLER_SCORE = 1_000_000;
+    private static final int HISTORY_LIMIT = 500_000;
+    private static final int PAWN = ChessPiece.PieceType.PAWN.ordinal();
+
+    private final TranspositionTable table;
+    private final Evaluator evaluator = new Evaluator();
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][256];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[2][64 * 64];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private int rootScore;
+
+    private ChessGame game;
+    private ChessBoard board;
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private boolean stopped;
+
+    /**
+     * Creates an engine with a 16 MB transposition table
+     */
+    public Engine() {
+        this(16);
+    }
+
+    public Engine(int hashMegabytes) {
+        table = new TranspositionTable(hashMegabytes);
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * Forgets everything learned in earlier searches
+     */
+    public void clear() {
+        table.clear();
+        for (int[] colorHistory : history) {
+            Arrays.fill(colorHistory, 0);
+        }
+    }
+
+    /**
+     * Searches the game's position for the team to move until a limit is hit
+     */
+    public SearchResult search(ChessGame position, SearchLimits limits) {
+        game = position.copy();
+        board = game.getBoard();
+        nodes = 0;
+        nodeLimit = limits.nodes();
+        deadline = (limits.millis() == 0) ? 0 : System.nanoTime() + limits.millis() * 1_000_000;
+        stopped = false;
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, 0);
+        }
+
+        MoveList rootMoves = new MoveList();
+        game.generateMoves(game.getTeamTurn(), rootMoves);
+        if (rootMoves.isEmpty()) {
+            int score = game.isInCheck(game.getTeamTurn()) ? -MATE : 0;
+            return new SearchResult(null, score, List.of(), 0, 0);
+        }
+
+        int maxDepth = (limits.depth() == 0) ? MAX_PLY - 1 : Math.min(limits.depth(), MAX_PLY - 1);
+        SearchResult result = null;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int score = negamax(depth, -INFINITY, INFINITY, 0);
+            if (stopped && result != null) {
+                break;
+            }
+            if (pvLength[0] == 0) { //stopped before any root move finished
+                return new SearchResult(MoveList.toChessMove(rootMoves.get(0)), 0,
+                        List.of(MoveList.toChessMove(rootMoves.get(0))), 0, nodes);
+            }
+            if (stopped) { //the first iteration was cut short, so keep the best finished root move's score
+                score = rootScore;
+            }
+            result = new SearchResult(MoveList.toChessMove(pv[0][0]), score, principalVariation(), depth, nodes);
+            if (stopped || result.isMate()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        ChessGame.TeamColor us = game.getTeamTurn();
+        if (ply > 0 && isDraw()) {
+            return 0;
+        }
+        boolean inCheck = game.isInCheck(us);
+        if (inCheck && ply < MAX_PLY - 1) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(alpha, beta, ply);
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+        if (countNode()) {
+            return 0;
+        }
+
+        long key = game.positionKey();
+        long entry = table.probe(key);
+        int hashMove = 0;
+        if (TranspositionTable.found(entry)) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        game.generateMoves(us, moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int[] scores = moveScores[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            scores[i] = orderScore(moves.get(i), hashMove, ply, us);
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, scores, i);
+            boolean quiet = scores[i] < CAPTURE_SCORE;
+
+            game.doMove(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (ply == 0) {
+                        rootScore = score;
+                    }
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            rememberQuietCutoff(move, depth, ply, us);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = (bestScore <= originalAlpha) ? TranspositionTable.UPPER
+                : (bestScore >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, bestMove, toTable(bestScore, ply), depth, bound);
+        return bestScore;
+    }
+
+    /**
+     * Searches only captures and queen promotions (or every evasion when in
+     * check) until the position is quiet, so the leaves are not scored in the
+     * middle of an exchange
+     */
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if (countNode()) {
+            return 0;
+        }
+        ChessGame.TeamColor us = game.getTeamTurn();
+        if (ply >= MAX_PLY - 1) {
+            return evaluate();
+        }
+        boolean inCheck = game.isInCheck(us);
+        if (!inCheck) {
+            int standPat = evaluate();
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        game.generateMoves(us, moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int[] scores = moveScores[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            scores[i] = orderScore(moves.get(i), 0, ply, us);
+        }
+
+        int bestScore = inCheck ? -INFINITY : alpha;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, scores, i);
+            if (!inCheck && scores[i] < CAPTURE_SCORE) {
+                break; //only quiet moves are left
+            }
+
+            game.doMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            game.undoMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * @return the score of the position for the team to move, in centipawns
+     */
+    private int evaluate() {
+        return evaluator.evaluate(game);
+    }
+
+    /**
+     * A position seen before in the game or the search line is scored as a draw:
+     * if repeating it was good, the side to move could have repeated it again.
+     */
+    private boolean isDraw() {
+        return game.getHalfmoveClock() >= 100 || board.hasInsufficientMaterial() || game.repetitionCount() > 1;
+    }
+
+    /**
+     * Counts a node and checks the limits
+     *
+     * @return whether the search has to stop
+     */
+    private boolean countNode() {
+        nodes++;
+        if (nodeLimit != 0 && nodes >= nodeLimit) {
+            stopped = true;
+        }
+        if (deadline != 0 && (nodes & 1023) == 0 && System.nanoTime() >= deadline) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private int orderScore(int move, int hashMove, int ply, ChessGame.TeamColor us) {
+        if (move == hashMove) {
+            return HASH_MOVE_SCORE;
+        }
+        int from = MoveList.from(move);
+        int to = MoveList.to(move);
+        int mover = board.pieceAt(from).getPieceType().ordinal();
+        ChessPiece victim = board.pieceAt(to);
+        boolean queening = MoveList.promotion(move) == ChessPiece.PieceType.QUEEN;
+        boolean enPassant = mover == PAWN && victim == null && (from & 7) != (to & 7);
+        if (victim != null || enPassant || queening) {
+            int gain = (victim != null) ? RANK[victim.getPieceType().ordinal()] : enPassant ? RANK[PAWN] : 0;
+            if (queening) {
+                gain += RANK[ChessPiece.PieceType.QUEEN.ordinal()];
+            }
+            return CAPTURE_SCORE + gain * 8 - RANK[mover];
+        }
+        if (move == killers[ply][0]) {
+            return KILLER_SCORE;
+        }
+        if (move == killers[ply][1]) {
+            return KILLER_SCORE - 1;
+        }
+        return history[us.ordinal()][from * 64 + to];
+    }
+
+    /**
+     * Moves the best-scored of the remaining moves to {@code index} and returns it
+     */
+    private static int pickNext(MoveList moves, int[] scores, int index) {
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            int move = moves.get(best);
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return moves.get(index);
+    }
+
+    private void rememberQuietCutoff(int move, int depth, int ply, ChessGame.TeamColor us) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] colorHistory = history[us.ordinal()];
+        int index = MoveList.from(move) * 64 + MoveList.to(move);
+        colorHistory[index] += depth * depth;
+        if (colorHistory[index] > HISTORY_LIMIT) {
+            for (int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] /= 2;
+            }
+        }
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - (ply + 1));
+        pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+    }
+
+    private List<ChessMove> principalVariation() {
+        List<ChessMove> line = new ArrayList<>(pvLength[0]);
+        for (int i = 0; i < pvLength[0]; i++) {
+            line.add(MoveList.toChessMove(pv[0][i]));
+        }
+        return line;
+    }
+
+    // mate scores are stored relative to the node so they stay right when the
+    // same position turns up at another ply
+
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,34 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * The outcome of a search, taken from the deepest iteration that finished.
+ *
+ * @param bestMove           the move to play, or null if the side to move has none
+ * @param score              centipawns from the point of view of the side to move;
+ *                           see {@link #isMate()}
+ * @param principalVariation the line both sides are expected to play, starting with bestMove
+ * @param depth              the deepest iteration that finished
+ * @param nodes              positions visited across all iterations
+ */
+public record SearchResult(ChessMove bestMove, int score, List<ChessMove> principalVariation, int depth,
+                           long nodes) {
+
+    /**
+     * @return whether the score announces a forced mate, for the side to move
+     * when positive and against it when negative
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Engine.MATE - Engine.MAX_PLY;
+    }
+
+    /**
+     * @return the number of plies to the announced mate, or 0 without one
+     */
+    public int matePlies() {
+        return isMate() ? Engine.MATE - Math.abs(score) : 0;
+    }
+}
@@ -0,0 +1,77 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results keyed by position, held in two long
+ * arrays so it costs no objects per entry. Each slot holds one entry; a new
+ * result replaces the old one unless the old one is a deeper search of the
+ * same position.
+ * <p>
+ * An entry packs the best move in bits 0-15, the score in bits 16-31, the
+ * depth in bits 32-39 and the bound in bits 40-41. Bit 63 marks the slot as used.
+ */
+final class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    private static final long USED = 1L << 63;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(1L, (long) megabytes * 1024 * 1024 / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 28));
+        keys = new long[size];
+        data = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * @return the entry stored for the key, or 0 if there is none
+     */
+    long probe(long key) {
+        int index = (int) key & mask;
+        return (keys[index] == key) ? data[index] : 0L;
+    }
+
+    void store(long key, int move, int score, int depth, int bound) {
+        int index = (int) key & mask;
+        long old = data[index];
+        if (keys[index] == key && (old & USED) != 0 && depth(old) > depth && bound != EXACT) {
+            return;
+        }
+        keys[index] = key;
+        data[index] = USED | (move & 0xFFFFL) | ((score & 0xFFFFL) << 16) | ((long) depth << 32)
+                | ((long) bound << 40);
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+    }
+
+    static boolean found(long entry) {
+        return (entry & USED) != 0;
+    }
+
+    static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    static int depth(long entry) {
+        return (int) ((entry >>> 32) & 0xFF);
+    }
+
+    static int bound(long entry) {
+        return (int) ((entry >>> 40) & 3);
+    }
+}
@@ -0,0 +1,189 @@
+package chess.eval;
+
+import chess.Attacks;
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Scores positions in centipawns from material, piece-square tables, pawn
+ * structure and king safety, blending middlegame and endgame terms by the
+ * board's {@link ChessBoard#phase() phase}.
+ * <p>
+ * Material and square values come from the running {@link chess.PieceSquareTables}
+ * sums the board keeps up to date as pieces move, so they cost nothing here
+ * beyond the tapering. Pawn structure is cached in a small table
+ * keyed by {@link ChessBoard#pawnKey()}, since pawns move far less often than
+ * pieces. An evaluator is not safe for use by several threads at once; give
+ * each thread its own.
+ */
+public final class Evaluator {
+
+    // middlegame and endgame terms packed into one int, see pack()
+    private static final int DOUBLED = pack(-10, -20);
+    private static final int ISOLATED = pack(-10, -15);
+    private static final int[] PASSED = {
+            pack(0, 0), pack(5, 10), pack(10, 15), pack(15, 25),
+            pack(25, 40), pack(40, 65), pack(60, 100), pack(0, 0)};
+    private static final int BISHOP_PAIR = pack(30, 50);
+    private static final int SHELTER_PAWN = 10;
+    private static final int OPEN_FILE_BY_KING = -15;
+    private static final int KING_ZONE_ATTACK = -8;
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // [color][square]: the squares ahead of a pawn on its own and neighboring files
+    private static final long[][] PASSED_SPAN = new long[2][64];
+    // [color][square]: the two rows ahead of a king on its own and neighboring files
+    private static final long[][] SHELTER = new long[2][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = Bitboards.FILE_A << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0L) | (file < 7 ? FILES[file + 1] : 0L);
+        }
+        for (int square = 0; square < 64; square++) {
+            int file = square & 7;
+            int row = square >>> 3;
+            long span = FILES[file] | ADJACENT_FILES[file];
+            long above = (row == 7) ? 0L : -1L << ((row + 1) * 8);
+            long below = (row == 0) ? 0L : -1L >>> ((8 - row) * 8);
+            PASSED_SPAN[0][square] = span & above;
+            PASSED_SPAN[1][square] = span & below;
+            long nextTwoUp = (row >= 6) ? 0L : (0xFFFFL << ((row + 1) * 8));
+            long nextTwoDown = (row <= 1) ? 0L : (0xFFFFL << ((row - 2) * 8));
+            SHELTER[0][square] = span & (row == 6 ? Bitboards.RANK_8 : nextTwoUp);
+            SHELTER[1][square] = span & (row == 1 ? Bitboards.RANK_1 : nextTwoDown);
+        }
+    }
+
+    private final long[] pawnKeys;
+    private final int[] pawnScores;
+    private final int pawnMask;
+
+    /**
+     * Creates an evaluator with a 16384-entry pawn structure cache
+     */
+    public Evaluator() {
+        this(1 << 14);
+    }
+
+    /**
+     * @param pawnHashEntries size of the pawn structure cache, rounded down to a power of two
+     */
+    public Evaluator(int pawnHashEntries) {
+        int size = Integer.highestOneBit(Math.max(pawnHashEntries, 1));
+        pawnKeys = new long[size];
+        pawnScores = new int[size];
+        pawnMask = size - 1;
+    }
+
+    /**
+     * @return the score of the game's position in centipawns, from the point of
+     * view of the team to move
+     */
+    public int evaluate(ChessGame game) {
+        int score = evaluate(game.getBoard());
+        return (game.getTeamTurn() == ChessGame.TeamColor.WHITE) ? score : -score;
+    }
+
+    /**
+     * @return the score of the board in centipawns, from white's point of view
+     */
+    public int evaluate(ChessBoard board) {
+        int packed = pawnStructure(board)
+                + bishopPair(board, ChessGame.TeamColor.WHITE) - bishopPair(board, ChessGame.TeamColor.BLACK);
+        int midgame = board.midgameScore() + midgame(packed)
+                + kingSafety(board, ChessGame.TeamColor.WHITE) - kingSafety(board, ChessGame.TeamColor.BLACK);
+        int endgame = board.endgameScore() + endgame(packed);
+
+        int phase = Math.min(board.phase(), ChessBoard.FULL_PHASE);
+        return (midgame * phase + endgame * (ChessBoard.FULL_PHASE - phase)) / ChessBoard.FULL_PHASE;
+    }
+
+    private int pawnStructure(ChessBoard board) {
+        long key = board.pawnKey();
+        int index = (int) key & pawnMask;
+        // an empty slot reads as key 0 with score 0, which is also the right
+        // answer for the one pawn structure with key 0: no pawns at all
+        if (pawnKeys[index] == key) {
+            return pawnScores[index];
+        }
+        long white = board.pieces(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+        long black = board.pieces(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
+        int score = pawnTerms(white, black, 0) - pawnTerms(black, white, 1);
+        pawnKeys[index] = key;
+        pawnScores[index] = score;
+        return score;
+    }
+
+    private static int pawnTerms(long ours, long theirs, int color) {
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            int count = Long.bitCount(ours & FILES[file]);
+            if (count > 1) {
+                score += DOUBLED * (count - 1);
+            }
+            if (count > 0 && (ours & ADJACENT_FILES[file]) == 0) {
+                score += ISOLATED * count;
+            }
+        }
+        long pawns = ours;
+        while (pawns != 0) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            if ((theirs & PASSED_SPAN[color][square]) == 0) {
+                int row = square >>> 3;
+                score += PASSED[(color == 0) ? row : 7 - row];
+            }
+        }
+        return score;
+    }
+
+    private static int bishopPair(ChessBoard board, ChessGame.TeamColor color) {
+        return board.pieceCount(color, ChessPiece.PieceType.BISHOP) >= 2 ? BISHOP_PAIR : 0;
+    }
+
+    /**
+     * @return a middlegame bonus for pawns in front of the king, less for open
+     * files beside it and for enemy attacks on the squares around it
+     */
+    private static int kingSafety(ChessBoard board, ChessGame.TeamColor color) {
+        int king = board.kingSquare(color);
+        if (king < 0) {
+            return 0;
+        }
+        ChessGame.TeamColor enemy = (color == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        int file = king & 7;
+
+        int score = SHELTER_PAWN * Long.bitCount(pawns & SHELTER[color.ordinal()][king]);
+        for (int f = Math.max(file - 1, 0); f <= Math.min(file + 1, 7); f++) {
+            if ((pawns & FILES[f]) == 0) {
+                score += OPEN_FILE_BY_KING;
+            }
+        }
+        long zone = Attacks.king(king);
+        score += KING_ZONE_ATTACK * Long.bitCount(board.attackedSquares(enemy) & zone);
+        return score;
+    }
+
+    // two 16-bit terms in one int: the endgame term in the low half (sign
+    // extended), the middlegame term above it, so packed terms add directly
+
+    private static int pack(int midgame, int endgame) {
+        return (midgame << 16) + endgame;
+    }
+
+    private static int midgame(int packed) {
+        return (packed + 0x8000) >> 16;
+    }
+
+    private static int endgame(int packed) {
+        return (short) packed;
+    }
+}
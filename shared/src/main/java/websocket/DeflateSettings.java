@@ -0,0 +1,26 @@
+package websocket;
+
+/**
+ * How the /ws endpoint compresses messages with permessage-deflate (RFC 7692).
+ * <p>
+ * Messages shorter than {@code minimumSize} bytes go out uncompressed, since on a short
+ * notification the deflate block costs about as much as it saves. With context takeover
+ * each side keeps its compression window from one message to the next, which is what
+ * makes a LOAD_GAME that differs from the last one by a move so cheap; turning it off
+ * frees that window between messages at the cost of a worse ratio.
+ *
+ * @param enabled         whether the extension is offered or accepted at all
+ * @param minimumSize     the smallest message, in bytes, that is compressed
+ * @param contextTakeover whether compression windows carry over between messages
+ */
+public record DeflateSettings(boolean enabled, int minimumSize, boolean contextTakeover) {
+
+    public static final DeflateSettings DEFAULT = new DeflateSettings(true, 128, true);
+    public static final DeflateSettings OFF = new DeflateSettings(false, 0, true);
+
+    public DeflateSettings {
+        if (minimumSize < 0) {
+            throw new IllegalArgumentException("minimum size must not be negative: " + minimumSize);
+        }
+    }
+}
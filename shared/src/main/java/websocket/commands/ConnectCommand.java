@@ -0,0 +1,37 @@
+package websocket.commands;
+
+import java.util.Objects;
+
+/**
+ * A CONNECT command that can ask for {@link websocket.messages.MoveMessage} updates in
+ * place of a full LOAD_GAME after every move. Clients that send a plain CONNECT keep
+ * getting LOAD_GAME.
+ */
+public class ConnectCommand extends UserGameCommand {
+    private final boolean moveUpdates;
+
+    public ConnectCommand(String authToken, Integer gameID, boolean moveUpdates) {
+        super(CommandType.CONNECT, authToken, gameID);
+        this.moveUpdates = moveUpdates;
+    }
+
+    public boolean wantsMoveUpdates() {
+        return moveUpdates;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        if (!(o instanceof ConnectCommand that)) {
+            return false;
+        }
+        return moveUpdates == that.moveUpdates;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), moveUpdates);
+    }
+}
@@ -26,7 +26,9 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        SYNC,
+        CLAIM_DRAW
     }
 
     public CommandType getCommandType() {
@@ -0,0 +1,96 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Announces one move to clients that asked for move updates on connect. The sequence
+ * is the game's ply number after the move, so a client holding the game at ply
+ * {@code sequence - 1} can play the move itself and anything else means it missed
+ * an update and should ask for the whole game again.
+ * <p>
+ * The move is written as coordinate text such as {@code "e2e4"} or {@code "e7e8q"}
+ * to keep the message small.
+ */
+public class MoveMessage extends ServerMessage {
+    @JsonAdapter(MoveText.class)
+    private final ChessMove move;
+    private final int sequence;
+    private final ChessGame.GameStatus status;
+
+    public MoveMessage(ChessMove move, int sequence, ChessGame.GameStatus status) {
+        super(ServerMessageType.MOVE);
+        this.move = move;
+        this.sequence = sequence;
+        this.status = status;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the status of the side to move after this move
+     */
+    public ChessGame.GameStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        if (!(o instanceof MoveMessage that)) {
+            return false;
+        }
+        return sequence == that.sequence && Objects.equals(move, that.move) && status == that.status;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), move, sequence, status);
+    }
+
+    static final class MoveText extends TypeAdapter<ChessMove> {
+
+        @Override
+        public void write(JsonWriter out, ChessMove move) throws IOException {
+            if (move == null) {
+                out.nullValue();
+                return;
+            }
+            out.value(move.toCoordinates());
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            String text = in.nextString();
+            if (!text.matches("[a-h][1-8][a-h][1-8][qrbn]?")) {
+                throw new JsonParseException("bad move: " + text);
+            }
+            ChessPiece.PieceType promotion = (text.length() == 4) ? null : switch (text.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                default -> ChessPiece.PieceType.KNIGHT;
+            };
+            return new ChessMove(ChessPosition.of(text.charAt(1) - '0', text.charAt(0) - 'a' + 1),
+                    ChessPosition.of(text.charAt(3) - '0', text.charAt(2) - 'a' + 1), promotion);
+        }
+    }
+}
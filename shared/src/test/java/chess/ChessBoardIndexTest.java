@@ -0,0 +1,84 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessBoardIndexTest {
+
+    @Test
+    public void countersFollowMovesAndCaptures() throws Exception {
+        ChessGame game = new ChessGame();
+        ChessBoard board = game.getBoard();
+        assertEquals(8, board.pieceCount(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        assertEquals(ChessBoard.FULL_PHASE, board.phase());
+        int startMaterial = board.material(ChessGame.TeamColor.BLACK);
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+
+        assertEquals(7, board.pieceCount(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        assertEquals(startMaterial - 100, board.material(ChessGame.TeamColor.BLACK));
+        assertEquals(Bitboards.square(1, 5), board.kingSquare(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    public void gsonRoundTripRebuildsIndexes() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null));
+
+        Gson gson = new Gson();
+        ChessBoard loaded = gson.fromJson(gson.toJson(game), ChessGame.class).getBoard();
+        ChessBoard original = game.getBoard();
+
+        assertEquals(original, loaded);
+        assertEquals(original.occupancy(), loaded.occupancy());
+        assertEquals(original.material(ChessGame.TeamColor.WHITE), loaded.material(ChessGame.TeamColor.WHITE));
+        assertEquals(original.phase(), loaded.phase());
+        assertEquals(Bitboards.square(8, 5), loaded.kingSquare(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    public void attackMapsMatchSquareQueries() throws Exception {
+        String[] fens = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        };
+        for (String fen : fens) {
+            ChessGame game = ChessGame.fromFen(fen);
+            MoveList moves = new MoveList();
+            game.generateMoves(game.getTeamTurn(), moves);
+            for (int i = 0; i < moves.size(); i++) {
+                game.makeMove(MoveList.toChessMove(moves.get(i)));
+                assertAttackMaps(game.getBoard());
+                game = ChessGame.fromFen(fen);
+            }
+        }
+    }
+
+    @Test
+    public void attackMapFollowsBoardEdits() {
+        ChessBoard board = new ChessGame().getBoard();
+        int g4 = Bitboards.square(4, 7);
+        assertEquals(0, board.attackedSquares(ChessGame.TeamColor.WHITE) & Bitboards.bit(g4));
+
+        // moving the e-pawn away opens the queen's diagonal
+        board.setPiece(Bitboards.square(2, 5), null);
+        assertNotEquals(0, board.attackedSquares(ChessGame.TeamColor.WHITE) & Bitboards.bit(g4));
+        assertEquals(1, board.attackerCount(ChessGame.TeamColor.WHITE, g4));
+    }
+
+    private static void assertAttackMaps(ChessBoard board) {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            long map = board.attackedSquares(color);
+            for (int square = 0; square < 64; square++) {
+                boolean attacked = Attacks.isAttacked(board, square, color);
+                assertEquals(attacked, (map & Bitboards.bit(square)) != 0, color + " on " + square);
+                assertEquals(attacked, board.attackerCount(color, square) > 0);
+            }
+        }
+    }
+}
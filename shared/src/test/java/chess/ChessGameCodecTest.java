@@ -0,0 +1,131 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessGameCodecTest {
+
+    @Test
+    public void roundTripsPositions() {
+        String[] fens = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 37 121",
+        };
+        for (String fen : fens) {
+            ChessGame game = ChessGame.fromFen(fen);
+            byte[] bytes = ChessGameCodec.encode(game);
+            assertEquals(ChessGameCodec.BYTES, bytes.length);
+            ChessGame decoded = ChessGameCodec.decode(bytes);
+            assertEquals(fen, decoded.toFen());
+            assertEquals(game.positionKey(), decoded.positionKey());
+            assertEquals(game, decoded);
+        }
+    }
+
+    @Test
+    public void keepsFlagsAndRepetitionHistory() throws Exception {
+        ChessGame game = new ChessGame();
+        String[] moves = {"e2e4", "e7e5", "e1e2", "e8e7", "e2e1", "e7e8", "e1e2", "e8e7", "e2e1", "e7e8",
+                "e1e2", "e8e7", "e2e1", "e7e8"};
+        for (String move : moves) {
+            game.makeMove(move(move));
+        }
+        byte[] bytes = ChessGameCodec.encode(game);
+        byte[] history = ChessGameCodec.encodeHistory(game);
+        assertEquals(ChessGameCodec.BYTES, bytes.length);
+        assertEquals(8 * 12, history.length);
+
+        ChessGame decoded = ChessGameCodec.decode(bytes, history);
+        assertEquals(game.castlingFlags(), decoded.castlingFlags());
+        assertEquals(3, decoded.repetitionCount());
+        assertEquals(ChessGame.DrawReason.THREEFOLD_REPETITION, decoded.drawReason());
+        assertEquals(game.toFen(), decoded.toFen());
+        assertArrayEquals(bytes, ChessGameCodec.encode(decoded));
+        assertArrayEquals(history, ChessGameCodec.encodeHistory(decoded));
+        assertArrayEquals(bytes, ChessGameCodec.encode(game.snapshot()));
+        assertEquals(1, ChessGameCodec.decode(bytes).repetitionCount());
+
+        // decoded games play on
+        decoded.makeMove(move("d2d4"));
+        assertEquals(0, decoded.getHalfmoveClock());
+    }
+
+    @Test
+    public void readsVersionOneRecords() throws Exception {
+        ChessGame game = new ChessGame();
+        for (String move : new String[]{"g1f3", "g8f6", "f3g1", "f6g8"}) {
+            game.makeMove(move(move));
+        }
+        byte[] history = ChessGameCodec.encodeHistory(game);
+        ByteBuffer old = ByteBuffer.allocate(41 + history.length);
+        old.put(ChessGameCodec.encode(game)).put(0, (byte) 1);
+        old.putShort((short) (history.length / 8)).put(history);
+
+        ChessGame decoded = ChessGameCodec.decode(old.array());
+        assertEquals(game.toFen(), decoded.toFen());
+        assertEquals(2, decoded.repetitionCount());
+    }
+
+    @Test
+    public void readsAndWritesInPlace() {
+        ChessGame game = ChessGame.fromFen("8/8/8/4k3/8/8/8/R3K3 b Q - 5 60");
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        buffer.put((byte) 7);
+        ChessGameCodec.encode(game, buffer);
+        assertEquals(1 + ChessGameCodec.BYTES, buffer.position());
+
+        buffer.flip().get();
+        assertEquals(game.toFen(), ChessGameCodec.decode(buffer).toFen());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void rejectsDamagedRecords() {
+        byte[] bytes = ChessGameCodec.encode(new ChessGame());
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(new byte[10]));
+
+        byte[] version = bytes.clone();
+        version[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(version));
+
+        byte[] piece = bytes.clone();
+        piece[20] = (byte) 0xFF;
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(piece));
+
+        assertThrows(IllegalArgumentException.class, () -> ChessGameCodec.decode(bytes, new byte[12]));
+    }
+
+    @Test
+    public void decodesFasterThanJson() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        byte[] bytes = ChessGameCodec.encode(game);
+        Gson gson = new Gson();
+        String json = gson.toJson(game);
+
+        int rounds = 50_000;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += ChessGameCodec.decode(bytes).getHalfmoveClock();
+        }
+        long binaryNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += gson.fromJson(json, ChessGame.class).getHalfmoveClock();
+        }
+        long jsonNanos = System.nanoTime() - start;
+        System.out.printf("binary %d bytes, %d ns to decode; json %d bytes, %d ns (checksum %d)%n",
+                bytes.length, binaryNanos / rounds, json.length(), jsonNanos / rounds, checksum);
+    }
+
+    private static ChessMove move(String text) {
+        return new ChessMove(new ChessPosition(text.charAt(1) - '0', text.charAt(0) - 'a' + 1),
+                new ChessPosition(text.charAt(3) - '0', text.charAt(2) - 'a' + 1), null);
+    }
+}
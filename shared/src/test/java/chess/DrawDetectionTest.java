@@ -0,0 +1,139 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DrawDetectionTest {
+
+    @Test
+    public void knightShufflesRepeatThePosition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        assertEquals(1, game.repetitionCount());
+
+        shuffleKnights(game);
+        assertEquals(2, game.repetitionCount());
+        assertNull(game.drawReason());
+
+        shuffleKnights(game);
+        assertEquals(3, game.repetitionCount());
+        assertEquals(ChessGame.DrawReason.THREEFOLD_REPETITION, game.drawReason());
+        assertFalse(game.drawReason().isAutomatic());
+
+        shuffleKnights(game);
+        shuffleKnights(game);
+        assertEquals(ChessGame.DrawReason.FIVEFOLD_REPETITION, game.drawReason());
+        assertTrue(game.drawReason().isAutomatic());
+    }
+
+    @Test
+    public void pawnMoveEndsTheRepetitionWindow() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        move(game, 2, 1, 3, 1);
+        move(game, 7, 1, 6, 1);
+        shuffleKnights(game);
+
+        assertEquals(2, game.repetitionCount());
+        assertNull(game.drawReason());
+    }
+
+    @Test
+    public void lostCastlingRightsMakeADifferentPosition() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1");
+        move(game, 1, 5, 1, 6);
+        move(game, 8, 5, 8, 6);
+        move(game, 1, 6, 1, 5);
+        move(game, 8, 6, 8, 5);
+
+        assertEquals(1, game.repetitionCount());
+        move(game, 1, 5, 1, 6);
+        move(game, 8, 5, 8, 6);
+        move(game, 1, 6, 1, 5);
+        move(game, 8, 6, 8, 5);
+        assertEquals(2, game.repetitionCount());
+    }
+
+    @Test
+    public void historySurvivesGson() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+
+        Gson gson = new Gson();
+        ChessGame loaded = gson.fromJson(gson.toJson(game), ChessGame.class);
+        assertEquals(3, loaded.repetitionCount());
+        assertEquals(3, game.copy().repetitionCount());
+    }
+
+    @Test
+    public void countStaysRightThroughUndoAndSnapshots() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        shuffleKnights(game);
+        ChessGame snapshot = game.snapshot();
+
+        game.doMove(MoveList.pack(new ChessMove(new ChessPosition(2, 1), new ChessPosition(4, 1), null)));
+        assertEquals(1, game.repetitionCount());
+        game.undoMove();
+        assertEquals(3, game.repetitionCount());
+
+        shuffleKnights(game);
+        assertEquals(4, game.repetitionCount());
+        assertEquals(3, snapshot.repetitionCount());
+        assertEquals(4, game.copy().repetitionCount());
+        assertEquals(4, ChessGameCodec.decode(ChessGameCodec.encode(game), ChessGameCodec.encodeHistory(game))
+                .repetitionCount());
+    }
+
+    @Test
+    public void moveCountRules() {
+        String fen = "4k3/8/8/8/8/8/8/R3K3 w - - %d 80";
+        assertNull(ChessGame.fromFen(String.format(fen, 99)).drawReason());
+        assertEquals(ChessGame.DrawReason.FIFTY_MOVE_RULE, ChessGame.fromFen(String.format(fen, 100)).drawReason());
+        assertEquals(ChessGame.DrawReason.SEVENTY_FIVE_MOVE_RULE,
+                ChessGame.fromFen(String.format(fen, 150)).drawReason());
+    }
+
+    @Test
+    public void insufficientMaterial() {
+        assertInsufficient(true, "4k3/8/8/8/8/8/8/4K3 w - - 0 1");
+        assertInsufficient(true, "4k3/8/8/8/8/8/8/4KN2 w - - 0 1");
+        assertInsufficient(true, "4kb2/8/8/8/8/8/8/4K3 w - - 0 1");
+        // bishops on same-colored squares, on either side
+        assertInsufficient(true, "4kb2/8/8/8/8/8/8/2B1K3 w - - 0 1");
+        assertInsufficient(true, "4k3/8/8/8/8/8/8/B1B1K3 b - - 0 1");
+
+        assertInsufficient(false, "4k3/8/8/8/8/8/8/2B1KB2 w - - 0 1");
+        assertInsufficient(false, "4k3/8/8/8/8/8/8/3NKN2 w - - 0 1");
+        assertInsufficient(false, "4kn2/8/8/8/8/8/8/4KB2 w - - 0 1");
+        assertInsufficient(false, "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1");
+        assertInsufficient(false, "4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+    }
+
+    @Test
+    public void insufficientMaterialFollowsCaptures() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/3r4/4K3 w - - 0 1");
+        assertNull(game.drawReason());
+        move(game, 1, 5, 2, 4);
+        assertEquals(ChessGame.DrawReason.INSUFFICIENT_MATERIAL, game.drawReason());
+    }
+
+    private static void assertInsufficient(boolean expected, String fen) {
+        assertEquals(expected, ChessGame.fromFen(fen).getBoard().hasInsufficientMaterial(), fen);
+    }
+
+    private static void shuffleKnights(ChessGame game) throws InvalidMoveException {
+        move(game, 1, 7, 3, 6);
+        move(game, 8, 7, 6, 6);
+        move(game, 3, 6, 1, 7);
+        move(game, 6, 6, 8, 7);
+    }
+
+    private static void move(ChessGame game, int fromRow, int fromCol, int toRow, int toCol)
+            throws InvalidMoveException {
+        game.makeMove(new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null));
+    }
+}
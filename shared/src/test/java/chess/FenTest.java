@@ -0,0 +1,95 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FenTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    public void startingGameMatchesTheStandardFen() {
+        assertEquals(START, new ChessGame().toFen());
+        assertEquals(new ChessGame(), ChessGame.fromFen(START));
+        assertEquals(new ChessGame().positionKey(), ChessGame.fromFen(START).positionKey());
+    }
+
+    @Test
+    public void roundTripsExactly() {
+        String[] fens = {
+                START,
+                KIWIPETE,
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+                "4k3/8/8/8/8/8/8/4K2R b K - 37 81",
+        };
+        for (String fen : fens) {
+            assertEquals(fen, ChessGame.fromFen(fen).toFen());
+        }
+    }
+
+    @Test
+    public void castlingRightsDriveMoveGeneration() {
+        // Kiwipete depth 3 exercises both sides castling through attacked squares
+        assertEquals(97862, new Perft().count(ChessGame.fromFen(KIWIPETE), 3));
+        // without rights white loses exactly its two castling moves
+        assertEquals(46, new Perft().count(ChessGame.fromFen(KIWIPETE.replace("KQkq", "-")), 1));
+    }
+
+    @Test
+    public void countersFollowPlay() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null));
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R b KQkq - 1 1", game.toFen());
+
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/8/5N2/PPPPPPPP/RNBQKB1R w KQkq e6 0 2", game.toFen());
+
+        game.makeMove(new ChessMove(new ChessPosition(3, 6), new ChessPosition(5, 5), null));
+        assertEquals("rnbqkbnr/pppp1ppp/8/4N3/8/8/PPPPPPPP/RNBQKB1R b KQkq - 0 2", game.toFen());
+
+        game.makeMove(new ChessMove(new ChessPosition(8, 5), new ChessPosition(7, 5), null));
+        assertEquals("rnbq1bnr/ppppkppp/8/4N3/8/8/PPPPPPPP/RNBQKB1R w KQ - 1 3", game.toFen());
+    }
+
+    @Test
+    public void countersSurviveGsonAndCopies() {
+        String fen = "4k3/8/8/8/8/8/8/4K2R b K - 37 81";
+        ChessGame game = ChessGame.fromFen(fen);
+        Gson gson = new Gson();
+        assertEquals(fen, gson.fromJson(gson.toJson(game), ChessGame.class).toFen());
+        assertEquals(fen, game.copy().toFen());
+    }
+
+    @Test
+    public void countersAreOptional() {
+        assertEquals(START, ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -").toFen());
+    }
+
+    @Test
+    public void rejectsMalformedFen() {
+        String[] bad = {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KX - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1",
+                "rnbqkbnr/pppp1ppp/8/4p3/8/8/PPPPPPPP/RNBQKBNR b KQkq e6 0 2",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e6 0 1",
+                "rnbqkbnr/pppp1ppp/4p3/4p3/8/8/PPPPPPPP/RNBQKBNR w KQkq e6 0 2",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - -1 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0",
+        };
+        for (String fen : bad) {
+            assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameStatusCacheTest {
+
+    @Test
+    public void statusFollowsMovesAndBoardEdits() throws Exception {
+        ChessGame game = new ChessGame();
+        assertEquals(ChessGame.GameStatus.ONGOING, game.status(ChessGame.TeamColor.WHITE));
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 6), new ChessPosition(3, 6), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(2, 7), new ChessPosition(4, 7), null));
+        assertEquals(ChessGame.GameStatus.ONGOING, game.status(ChessGame.TeamColor.WHITE));
+
+        game.makeMove(new ChessMove(new ChessPosition(8, 4), new ChessPosition(4, 8), null));
+        assertEquals(ChessGame.GameStatus.CHECKMATE, game.status(ChessGame.TeamColor.WHITE));
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.WHITE));
+
+        // editing the board directly must not leave a stale answer behind
+        game.getBoard().addPiece(new ChessPosition(4, 8), null);
+        assertEquals(ChessGame.GameStatus.ONGOING, game.status(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    public void cachedMovesFollowMovesAndBoardEdits() throws Exception {
+        ChessGame game = new ChessGame();
+        ChessPosition knight = new ChessPosition(1, 7);
+        assertEquals(2, game.validMoves(knight).size());
+        assertEquals(20, game.legalMoves(ChessGame.TeamColor.WHITE).size());
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertEquals(3, game.validMoves(knight).size());
+        assertTrue(game.isLegal(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null)));
+
+        game.getBoard().addPiece(new ChessPosition(3, 6), ChessPiece.of(ChessGame.TeamColor.WHITE,
+                ChessPiece.PieceType.PAWN));
+        assertEquals(2, game.validMoves(knight).size());
+
+        game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(
+                new ChessMove(knight, new ChessPosition(3, 6), null)));
+    }
+}
@@ -0,0 +1,145 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonFormTest {
+
+    private static final Gson GSON = new Gson();
+
+    @Test
+    public void writesCompactForms() {
+        assertEquals("\"K\"", GSON.toJson(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)));
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        assertEquals("\"RNBQKBNRPPPPPPPP................................pppppppprnbqkbnr\"", GSON.toJson(board));
+        assertEquals("{\"board\":\"RNBQKBNRPPPPPPPP................................pppppppprnbqkbnr\","
+                + "\"turn\":\"w\",\"clock\":[0,1]}", GSON.toJson(new ChessGame()));
+    }
+
+    @Test
+    public void roundTripsTheWholeGameState() throws Exception {
+        ChessGame game = new ChessGame();
+        for (String move : new String[]{"e2e4", "g8f6", "e1e2", "f6g8", "e2e1", "g8f6", "e4e5", "d7d5"}) {
+            game.makeMove(move(move));
+        }
+        // two knight tours around the board bring the position back once
+        for (int i = 0; i < 2; i++) {
+            for (String move : new String[]{"g1f3", "f6g8", "f3g1", "g8f6"}) {
+                game.makeMove(move(move));
+            }
+        }
+
+        String json = GSON.toJson(game);
+        ChessGame loaded = GSON.fromJson(json, ChessGame.class);
+        assertEquals(game.toFen(), loaded.toFen());
+        assertEquals(game.castlingFlags(), loaded.castlingFlags());
+        assertEquals(2, loaded.repetitionCount());
+        assertEquals(json, GSON.toJson(loaded));
+        assertEquals(json, GSON.toJson(game.snapshot()));
+
+        ChessGame enPassant = ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K3 w - d6 3 40");
+        ChessGame loadedEnPassant = GSON.fromJson(GSON.toJson(enPassant), ChessGame.class);
+        assertEquals(enPassant.toFen(), loadedEnPassant.toFen());
+        assertTrue(loadedEnPassant.isLegal(move("e5d6")));
+    }
+
+    @Test
+    public void readsTheFieldByFieldForm() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        game.makeMove(move("d7d5"));
+        game.makeMove(move("e4e5"));
+        game.makeMove(move("f7f5"));
+
+        ChessGame loaded = GSON.fromJson(verbose(game), ChessGame.class);
+        assertEquals(game.toFen(), loaded.toFen());
+        assertEquals(game.positionKey(), loaded.positionKey());
+        assertTrue(loaded.isLegal(move("e5f6")));
+
+        // games stored before move counters and history existed
+        String old = verbose(new ChessGame()).replaceAll(",\"halfmoveClock.*}$", "}");
+        ChessGame oldGame = GSON.fromJson(old, ChessGame.class);
+        assertEquals(new ChessGame().toFen(), oldGame.toFen());
+        assertEquals(1, oldGame.repetitionCount());
+
+        assertEquals(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN),
+                GSON.fromJson("{\"pieceColor\":\"BLACK\",\"type\":\"PAWN\"}", ChessPiece.class));
+    }
+
+    @Test
+    public void rejectsMalformedBoards() {
+        assertThrows(JsonParseException.class, () -> GSON.fromJson("\"RNBQ\"", ChessBoard.class));
+        assertThrows(JsonParseException.class, () -> GSON.fromJson("\"x\"", ChessPiece.class));
+    }
+
+    @Test
+    public void isAnOrderOfMagnitudeSmaller() {
+        ChessGame game = new ChessGame();
+        String compact = GSON.toJson(game);
+        String verbose = verbose(game);
+        assertTrue(compact.length() * 10 < verbose.length(), compact.length() + " vs " + verbose.length());
+
+        int rounds = 20_000;
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += GSON.fromJson(compact, ChessGame.class).getBoard().occupancy();
+        }
+        long compactNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            checksum += GSON.fromJson(verbose, ChessGame.class).getBoard().occupancy();
+        }
+        long verboseNanos = System.nanoTime() - start;
+        System.out.printf("compact %d bytes, %d ns to parse; verbose %d bytes, %d ns (checksum %d)%n",
+                compact.length(), compactNanos / rounds, verbose.length(), verboseNanos / rounds, checksum);
+    }
+
+    /**
+     * @return the game as Gson wrote it field by field, before the compact form
+     */
+    private static String verbose(ChessGame game) {
+        StringBuilder json = new StringBuilder("{\"teamTurn\":\"").append(game.getTeamTurn()).append("\",\"board\":{\"squares\":[");
+        for (int row = 0; row < 8; row++) {
+            json.append(row > 0 ? ",[" : "[");
+            for (int col = 0; col < 8; col++) {
+                ChessPiece piece = game.getBoard().pieceAt(row * 8 + col);
+                json.append(col > 0 ? "," : "").append(piece == null ? "null"
+                        : "{\"pieceColor\":\"" + piece.getTeamColor() + "\",\"type\":\"" + piece.getPieceType() + "\"}");
+            }
+            json.append("]");
+        }
+        json.append("]}");
+        int flags = game.castlingFlags();
+        String[] names = {"whiteKingMoved", "blackKingMoved", "whiteARookMoved", "whiteHRookMoved",
+                "blackARookMoved", "blackHRookMoved"};
+        for (int i = 0; i < names.length; i++) {
+            json.append(",\"").append(names[i]).append("\":").append((flags & (1 << i)) != 0);
+        }
+        ChessPosition enPassant = game.getEnPassantTarget();
+        if (enPassant != null) {
+            json.append(",\"enPassantTarget\":{\"row\":").append(enPassant.getRow())
+                    .append(",\"col\":").append(enPassant.getColumn()).append("}");
+        }
+        long[] history = game.repetitionHistory();
+        json.append(",\"halfmoveClock\":").append(game.getHalfmoveClock())
+                .append(",\"fullmoveNumber\":").append(game.getFullmoveNumber())
+                .append(",\"keyHistory\":[0,0");
+        for (long key : history) {
+            json.append(",").append(key);
+        }
+        for (int i = history.length + 2; i < 16; i++) {
+            json.append(",0");
+        }
+        return json.append("],\"historyStart\":2,\"historySize\":").append(history.length + 2).append("}").toString();
+    }
+
+    private static ChessMove move(String text) {
+        return new ChessMove(new ChessPosition(text.charAt(1) - '0', text.charAt(0) - 'a' + 1),
+                new ChessPosition(text.charAt(3) - '0', text.charAt(2) - 'a' + 1), null);
+    }
+}
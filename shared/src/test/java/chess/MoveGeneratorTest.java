@@ -0,0 +1,124 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveGeneratorTest {
+
+    @Test
+    public void matchesTrialFilteringOverRandomGames() throws Exception {
+        Random random = new Random(240);
+        for (int gameNumber = 0; gameNumber < 40; gameNumber++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < 120; ply++) {
+                ChessGame.TeamColor color = game.getTeamTurn();
+                MoveList packed = new MoveList();
+                new MoveGenerator(game, color).generate(packed);
+                List<ChessMove> legal = packed.toChessMoves(new ArrayList<>());
+
+                assertEquals(trialFiltered(game.getBoard(), color), normalMoves(game, legal));
+                if (legal.isEmpty()) {
+                    break;
+                }
+                game.makeMove(legal.get(random.nextInt(legal.size())));
+                assertFalse(game.isInCheck(color));
+            }
+        }
+    }
+
+    @Test
+    public void enPassantCannotExposeKingAlongRank() throws Exception {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | | |
+                | | |p| | | | | |
+                | | | | | | | | |
+                |K|P| | | | | |r|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |k| | | |
+                """));
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        game.makeMove(new ChessMove(new ChessPosition(7, 3), new ChessPosition(5, 3), null));
+
+        Collection<ChessMove> moves = game.validMoves(new ChessPosition(5, 2));
+
+        assertEquals(Set.of(new ChessMove(new ChessPosition(5, 2), new ChessPosition(6, 2), null)),
+                new HashSet<>(moves));
+    }
+
+    @Test
+    public void doubleCheckAllowsOnlyKingMoves() {
+        ChessGame game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard("""
+                | | | | |r| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | |n| | | | |
+                | | | | | | | | |
+                | | | | |K| | |k|
+                """));
+
+        List<ChessMove> legal = new ArrayList<>();
+        MoveList packed = new MoveList();
+        game.generateMoves(ChessGame.TeamColor.WHITE, packed);
+        packed.toChessMoves(legal);
+
+        assertFalse(legal.isEmpty());
+        for (ChessMove move : legal) {
+            assertEquals(new ChessPosition(1, 5), move.getStartPosition());
+        }
+    }
+
+    // expected legal moves, excluding castling and en passant, by trying each pseudo-legal move on a copy
+    private static Set<ChessMove> trialFiltered(ChessBoard board, ChessGame.TeamColor color) {
+        ChessGame.TeamColor enemy = (color == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        Set<ChessMove> expected = new HashSet<>();
+        long pieces = board.occupancy(color);
+        while (pieces != 0) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            ChessPiece piece = board.pieceAt(from);
+            for (ChessMove move : piece.pieceMoves(board, Bitboards.position(from))) {
+                ChessBoard copy = board.copy();
+                ChessPiece placed = move.getPromotionPiece() == null
+                        ? piece : new ChessPiece(color, move.getPromotionPiece());
+                copy.setPiece(from, null);
+                copy.setPiece(Bitboards.square(move.getEndPosition()), placed);
+                int king = Long.numberOfTrailingZeros(copy.pieces(color, ChessPiece.PieceType.KING));
+                if (!Attacks.isAttacked(copy, king, enemy)) {
+                    expected.add(move);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static Set<ChessMove> normalMoves(ChessGame game, List<ChessMove> legal) {
+        Set<ChessMove> normal = new HashSet<>();
+        for (ChessMove move : legal) {
+            ChessPiece piece = game.getBoard().getPiece(move.getStartPosition());
+            boolean castle = piece.getPieceType() == ChessPiece.PieceType.KING
+                    && Math.abs(move.getEndPosition().getColumn() - move.getStartPosition().getColumn()) == 2;
+            boolean enPassant = piece.getPieceType() == ChessPiece.PieceType.PAWN
+                    && move.getEndPosition().equals(game.getEnPassantTarget());
+            if (!castle && !enPassant) {
+                normal.add(move);
+            }
+        }
+        return normal;
+    }
+}
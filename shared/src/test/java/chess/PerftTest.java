@@ -0,0 +1,143 @@
+package chess;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static passoff.chess.TestUtilities.loadBoard;
+
+/**
+ * Checks leaf node counts against the published perft results for the usual
+ * reference positions, and prints the speed of each run.
+ */
+public class PerftTest {
+
+    private static final String KIWIPETE = """
+            |r| | | |k| | |r|
+            |p| |p|p|q|p|b| |
+            |b|n| | |p|n|p| |
+            | | | |P|N| | | |
+            | |p| | |P| | | |
+            | | |N| | |Q| |p|
+            |P|P|P|B|B|P|P|P|
+            |R| | | |K| | |R|
+            """;
+
+    // the en passant and rank pin position, "position 3" in the usual suite
+    private static final String ENDGAME = """
+            | | | | | | | | |
+            | | |p| | | | | |
+            | | | |p| | | | |
+            |K|P| | | | | |r|
+            | |R| | | |p| |k|
+            | | | | | | | | |
+            | | | | |P| |P| |
+            | | | | | | | | |
+            """;
+
+    // "position 4", promotions on both sides and black may castle
+    private static final String PROMOTIONS = """
+            |r| | | |k| | |r|
+            |P|p|p|p| |p|p|p|
+            | |b| | | |n|b|N|
+            |n|P| | | | | | |
+            |B|B|P| |P| | | |
+            |q| | | | |N| | |
+            |P|p| |P| | |P|P|
+            |R| | |Q| |R|K| |
+            """;
+
+    // "position 5", an underpromotion-heavy middlegame
+    private static final String MIDDLEGAME = """
+            |r|n|b|q| |k| |r|
+            |p|p| |P|b|p|p|p|
+            | | |p| | | | | |
+            | | | | | | | | |
+            | | |B| | | | | |
+            | | | | | | | | |
+            |P|P|P| |N|n|P|P|
+            |R|N|B|Q|K| | |R|
+            """;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    public static void startPool() {
+        pool = new ForkJoinPool();
+    }
+
+    @AfterAll
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void startPosition() {
+        assertPerft(new ChessGame(), 20, 400, 8902, 197281, 4865609);
+    }
+
+    @Test
+    public void kiwipete() {
+        assertPerft(game(KIWIPETE), 48, 2039, 97862, 4085603);
+    }
+
+    @Test
+    public void enPassantEndgame() {
+        assertPerft(game(ENDGAME), 14, 191, 2812, 43238, 674624);
+    }
+
+    @Test
+    public void promotions() {
+        assertPerft(game(PROMOTIONS), 6, 264, 9467, 422333);
+    }
+
+    @Test
+    public void middlegame() {
+        assertPerft(game(MIDDLEGAME), 44, 1486, 62379, 2103487);
+    }
+
+    @Test
+    public void hashTableGivesTheSameCounts() {
+        Perft hashed = new Perft(pool, 1 << 16);
+        assertEquals(4085603, timed("kiwipete, hashed", hashed, game(KIWIPETE), 4));
+        assertEquals(4865609, timed("start, hashed", hashed, new ChessGame(), 5));
+    }
+
+    @Test
+    public void divideSumsToTheTotal() {
+        ChessGame game = game(KIWIPETE);
+        Map<ChessMove, Long> divide = new Perft(pool, 0).divide(game, 3);
+
+        assertEquals(48, divide.size());
+        assertEquals(97862, divide.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(game(KIWIPETE).positionKey(), game.positionKey(), "perft must leave the game unchanged");
+    }
+
+    private static ChessGame game(String boardText) {
+        ChessGame game = new ChessGame();
+        game.setBoard(loadBoard(boardText));
+        return game;
+    }
+
+    private static void assertPerft(ChessGame game, long... expected) {
+        Perft perft = new Perft(pool, 0);
+        int depth = expected.length;
+        for (int shallow = 1; shallow < depth; shallow++) {
+            assertEquals(expected[shallow - 1], perft.count(game, shallow), "depth " + shallow);
+        }
+        assertEquals(expected[depth - 1], timed("depth " + depth, perft, game, depth), "depth " + depth);
+    }
+
+    private static long timed(String label, Perft perft, ChessGame game, int depth) {
+        long start = System.nanoTime();
+        long nodes = perft.count(game, depth);
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        System.out.printf("perft %s: %d nodes in %d ms, %d nodes/s%n",
+                label, nodes, nanos / 1_000_000, nodes * 1_000_000_000L / nanos);
+        return nodes;
+    }
+}
@@ -0,0 +1,101 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedChessGameTest {
+
+    @Test
+    public void publishesEachMoveAsASnapshot() throws Exception {
+        SharedChessGame shared = new SharedChessGame(new ChessGame());
+        SharedChessGame.State start = shared.current();
+        assertEquals(0, start.sequence());
+        assertNull(start.lastMove());
+        assertTrue(start.game().isSnapshot());
+
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        SharedChessGame.State next = shared.makeMove(move);
+        assertEquals(1, next.sequence());
+        assertEquals(move, next.lastMove());
+        assertSame(next.game(), shared.snapshot());
+        assertEquals(ChessGame.TeamColor.BLACK, shared.getTeamTurn());
+        assertNotNull(shared.getBoard().getPiece(new ChessPosition(4, 5)));
+        assertEquals(ChessGame.GameStatus.ONGOING, shared.status(ChessGame.TeamColor.BLACK));
+        assertEquals(2, shared.validMoves(new ChessPosition(8, 7)).size());
+
+        // the earlier state is untouched
+        assertNull(start.game().getBoard().getPiece(new ChessPosition(4, 5)));
+        assertThrows(UnsupportedOperationException.class,
+                () -> shared.getBoard().addPiece(new ChessPosition(4, 5), null));
+    }
+
+    @Test
+    public void illegalMovesPublishNothing() throws InvalidMoveException {
+        SharedChessGame shared = new SharedChessGame(new ChessGame());
+        assertThrows(InvalidMoveException.class, () -> shared.makeMove(
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(5, 5), null)));
+        assertEquals(0, shared.current().sequence());
+
+        shared.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        assertThrows(InvalidMoveException.class, () -> shared.makeMove(
+                new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null), ChessGame.TeamColor.WHITE));
+        assertEquals(1, shared.current().sequence());
+
+        SharedChessGame.State reset = shared.reset(ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1"));
+        assertEquals(2, reset.sequence());
+        assertNull(reset.lastMove());
+        assertEquals("4k3/8/8/8/8/8/8/4K2R w K - 0 1", shared.snapshot().toFen());
+    }
+
+    @Test
+    public void readersSeeConsistentStatesWhileMovesArePlayed() throws Exception {
+        // knights shuffling back and forth; every state is checked against its sequence number
+        ChessMove[] cycle = {
+                new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null),
+                new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null),
+                new ChessMove(new ChessPosition(3, 6), new ChessPosition(1, 7), null),
+                new ChessMove(new ChessPosition(6, 6), new ChessPosition(8, 7), null)};
+        SharedChessGame shared = new SharedChessGame(new ChessGame());
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        SharedChessGame.State state = shared.current();
+                        ChessGame.TeamColor turn = (state.sequence() % 2 == 0)
+                                ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                        assertEquals(turn, state.game().getTeamTurn());
+                        if (state.lastMove() != null) {
+                            assertEquals(cycle[(int) ((state.sequence() - 1) % cycle.length)], state.lastMove());
+                            assertNotNull(state.game().getBoard().getPiece(state.lastMove().getEndPosition()));
+                        }
+                        assertEquals(ChessGame.GameStatus.ONGOING, state.game().status(turn));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        for (int i = 0; i < 400; i++) {
+            shared.makeMove(cycle[i % cycle.length]);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+        assertEquals(400, shared.current().sequence());
+    }
+}
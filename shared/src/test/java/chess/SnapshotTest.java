@@ -0,0 +1,90 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+
+    @Test
+    public void snapshotKeepsItsPositionWhileTheGamePlaysOn() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        ChessGame snapshot = game.snapshot();
+        String fen = snapshot.toFen();
+
+        game.makeMove(move(7, 5, 5, 5));
+        game.makeMove(move(1, 7, 3, 6));
+
+        assertEquals(fen, snapshot.toFen());
+        assertEquals(ChessGame.TeamColor.BLACK, snapshot.getTeamTurn());
+        assertEquals(20, snapshot.legalMoves(ChessGame.TeamColor.BLACK).size());
+        assertNotEquals(fen, game.toFen());
+    }
+
+    @Test
+    public void unchangedRowsAreShared() throws Exception {
+        ChessGame game = new ChessGame();
+        ChessGame snapshot = game.snapshot();
+        game.makeMove(move(2, 5, 4, 5));
+
+        ChessBoard live = game.getBoard();
+        ChessBoard frozen = snapshot.getBoard();
+        assertTrue(frozen.sharesRow(live, 0));
+        assertTrue(frozen.sharesRow(live, 7));
+        assertFalse(frozen.sharesRow(live, 1));
+        assertFalse(frozen.sharesRow(live, 3));
+        assertNotNull(frozen.pieceAt(12));
+        assertNull(frozen.pieceAt(28));
+    }
+
+    @Test
+    public void snapshotsRefuseChanges() {
+        ChessGame snapshot = new ChessGame().snapshot();
+        assertTrue(snapshot.isSnapshot());
+        assertSame(snapshot, snapshot.snapshot());
+
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.makeMove(move(2, 5, 4, 5)));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.setTeamTurn(ChessGame.TeamColor.BLACK));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.setBoard(new ChessBoard()));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getBoard().resetBoard());
+        assertThrows(UnsupportedOperationException.class,
+                () -> snapshot.getBoard().addPiece(new ChessPosition(4, 4), null));
+    }
+
+    @Test
+    public void copyOfASnapshotPlaysOn() throws Exception {
+        ChessGame snapshot = new ChessGame().snapshot();
+        ChessGame game = snapshot.copy();
+        assertFalse(game.isSnapshot());
+
+        game.makeMove(move(2, 5, 4, 5));
+        assertEquals(new ChessGame().toFen(), snapshot.toFen());
+        assertNull(snapshot.getBoard().getPiece(new ChessPosition(4, 5)));
+    }
+
+    @Test
+    public void snapshotsSerializeLikeTheGame() throws Exception {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 2; i++) {
+            game.makeMove(move(1, 7, 3, 6));
+            game.makeMove(move(8, 7, 6, 6));
+            game.makeMove(move(3, 6, 1, 7));
+            game.makeMove(move(6, 6, 8, 7));
+        }
+        ChessGame snapshot = game.snapshot();
+        game.makeMove(move(2, 1, 3, 1));
+
+        Gson gson = new Gson();
+        ChessGame loaded = gson.fromJson(gson.toJson(snapshot), ChessGame.class);
+        assertFalse(loaded.isSnapshot());
+        assertEquals(snapshot.toFen(), loaded.toFen());
+        assertEquals(3, loaded.repetitionCount());
+        assertEquals(1, game.repetitionCount());
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+}
@@ -0,0 +1,66 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZobristTest {
+
+    @Test
+    public void startingKeyIsStable() {
+        // stored keys depend on this value never changing between builds
+        assertEquals(0xa36722669967aca8L, new ChessGame().positionKey());
+    }
+
+    @Test
+    public void transpositionsShareAKey() throws Exception {
+        ChessGame viaKnights = new ChessGame();
+        move(viaKnights, 1, 7, 3, 6);
+        move(viaKnights, 8, 7, 6, 6);
+        move(viaKnights, 3, 6, 1, 7);
+        move(viaKnights, 6, 6, 8, 7);
+
+        assertEquals(new ChessGame().positionKey(), viaKnights.positionKey());
+    }
+
+    @Test
+    public void castlingRightsAndTurnChangeTheKey() throws Exception {
+        ChessGame kingWalk = new ChessGame();
+        move(kingWalk, 2, 5, 4, 5);
+        move(kingWalk, 7, 5, 5, 5);
+        move(kingWalk, 1, 5, 2, 5);
+        move(kingWalk, 8, 5, 7, 5);
+        move(kingWalk, 2, 5, 1, 5);
+        move(kingWalk, 7, 5, 8, 5);
+
+        ChessGame pawnsOnly = new ChessGame();
+        move(pawnsOnly, 2, 5, 4, 5);
+        move(pawnsOnly, 7, 5, 5, 5);
+
+        assertEquals(kingWalk.getBoard(), pawnsOnly.getBoard());
+        assertNotEquals(kingWalk.positionKey(), pawnsOnly.positionKey());
+
+        long before = pawnsOnly.positionKey();
+        pawnsOnly.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertNotEquals(before, pawnsOnly.positionKey());
+    }
+
+    @Test
+    public void keySurvivesGsonRoundTrip() throws Exception {
+        ChessGame game = new ChessGame();
+        move(game, 2, 5, 4, 5);
+        move(game, 8, 7, 6, 6);
+        move(game, 1, 5, 2, 5);
+
+        Gson gson = new Gson();
+        ChessGame loaded = gson.fromJson(gson.toJson(game), ChessGame.class);
+
+        assertEquals(game.positionKey(), loaded.positionKey());
+        assertEquals(game.hashCode(), loaded.hashCode());
+    }
+
+    private static void move(ChessGame game, int fromRow, int fromCol, int toRow, int toCol) throws Exception {
+        game.makeMove(new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null));
+    }
+}
@@ -0,0 +1,189 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTest {
+
+    private static final PolyglotKeys KEYS = PolyglotKeys.standard();
+
+    @Test
+    public void findsWeightedMovesOfBuiltGames(@TempDir Path directory) throws Exception {
+        BookBuilder builder = new BookBuilder(KEYS, 8);
+        builder.addGame(List.of(move("e2e4"), move("e7e5"), move("g1f3")), ChessGame.TeamColor.WHITE);
+        builder.addGame(List.of(move("e2e4"), move("c7c5")), ChessGame.TeamColor.BLACK);
+        builder.addGame(List.of(move("d2d4"), move("d7d5")), null);
+        Path file = directory.resolve("book.bin");
+        builder.write(file);
+
+        OpeningBook book = OpeningBook.open(file, KEYS);
+        List<BookMove> start = book.lookup(new ChessGame());
+        assertEquals(List.of(new BookMove(move("e2e4"), 2), new BookMove(move("d2d4"), 1)), start);
+
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        // black lost the e5 game, so only the Sicilian is recorded
+        assertEquals(List.of(new BookMove(move("c7c5"), 2)), book.lookup(game));
+        game.makeMove(move("c7c5"));
+        assertTrue(book.lookup(game).isEmpty());
+
+        ChessMove picked = book.pick(new ChessGame(), new Random(1));
+        assertTrue(picked.equals(move("e2e4")) || picked.equals(move("d2d4")));
+        assertNull(book.pick(game, new Random(1)));
+    }
+
+    @Test
+    public void writesCastlingAsTheKingTakingItsRook() {
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+        int kingside = OpeningBook.encodeMove(game, move("e1g1"));
+        int queenside = OpeningBook.encodeMove(game, move("e1c1"));
+        assertEquals(7 | (4 << 6), kingside);
+        assertEquals(4 << 6, queenside);
+        assertEquals(move("e1g1"), OpeningBook.decodeMove(game, kingside));
+        assertEquals(move("e1c1"), OpeningBook.decodeMove(game, queenside));
+
+        ChessGame promotion = ChessGame.fromFen("8/P6k/8/8/8/8/8/K7 w - - 0 1");
+        ChessMove queen = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        assertEquals(queen, OpeningBook.decodeMove(promotion, OpeningBook.encodeMove(promotion, queen)));
+    }
+
+    @Test
+    public void keysFollowPolyglotRules() throws Exception {
+        ChessGame game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        // no black pawn can take en passant, so the target square is not part of the key
+        assertEquals(KEYS.key(ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1")),
+                KEYS.key(game));
+        assertNotEquals(KEYS.key(ChessGame.fromFen("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1")),
+                KEYS.key(ChessGame.fromFen("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1")));
+        assertNotEquals(KEYS.key(ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1")),
+                KEYS.key(ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w Kkq - 0 1")));
+
+        // transpositions share a key
+        ChessGame other = new ChessGame();
+        for (String move : new String[]{"g1f3", "g8f6", "b1c3"}) {
+            other.makeMove(move(move));
+        }
+        ChessGame same = new ChessGame();
+        for (String move : new String[]{"b1c3", "g8f6", "g1f3"}) {
+            same.makeMove(move(move));
+        }
+        assertEquals(KEYS.key(other), KEYS.key(same));
+    }
+
+    @Test
+    public void matchesPolyglotReferenceKeys() throws Exception {
+        // the test positions of the Polyglot book format description
+        assertEquals(0x463b96181691fc9cL, KEYS.key(new ChessGame()));
+        String[] moves = {"e2e4", "d7d5", "e4e5", "f7f5", "e1e2", "e8f7"};
+        long[] keys = {0x823c9b50fd114196L, 0x0756b94461c50fb0L, 0x662fafb965db29d4L,
+                0x22a48b5a8e47ff78L, 0x652a607ca3f242c1L, 0x00fdd303c946bdd9L};
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < moves.length; i++) {
+            game.makeMove(move(moves[i]));
+            assertEquals(keys[i], KEYS.key(game), moves[i]);
+        }
+
+        game = new ChessGame();
+        for (String move : new String[]{"a2a4", "b7b5", "h2h4", "b5b4", "c2c4"}) {
+            game.makeMove(move(move));
+        }
+        assertEquals(0x3c8123ea7b067637L, KEYS.key(game));
+        game.makeMove(move("b4c3"));
+        game.makeMove(move("a1a3"));
+        assertEquals(0x5c3f9b829b279560L, KEYS.key(game));
+    }
+
+    @Test
+    public void loadsRandomTables(@TempDir Path directory) throws Exception {
+        Path table = directory.resolve("random.bin");
+        try (DataOutputStream data = new DataOutputStream(Files.newOutputStream(table))) {
+            for (int i = 0; i < PolyglotKeys.SIZE; i++) {
+                data.writeLong(i + 1);
+            }
+        }
+        PolyglotKeys keys = PolyglotKeys.load(table);
+        assertEquals(PolyglotKeys.of(longs(PolyglotKeys.SIZE)).key(new ChessGame()), keys.key(new ChessGame()));
+
+        Files.write(table, new byte[16]);
+        assertThrows(IOException.class, () -> PolyglotKeys.load(table));
+        assertThrows(IllegalArgumentException.class, () -> PolyglotKeys.of(new long[10]));
+        Files.write(table, new byte[17]);
+        assertThrows(IOException.class, () -> OpeningBook.open(table, KEYS));
+    }
+
+    @Test
+    public void looksUpLargeBooksQuickly(@TempDir Path directory) throws Exception {
+        // a million filler entries around the real start position entry
+        Path file = directory.resolve("large.bin");
+        long startKey = KEYS.key(new ChessGame());
+        int startMove = OpeningBook.encodeMove(new ChessGame(), move("e2e4"));
+        Random random = new Random(19);
+        Long[] filler = new Long[1_000_000];
+        for (int i = 0; i < filler.length; i++) {
+            filler[i] = random.nextLong();
+        }
+        Arrays.sort(filler, Long::compareUnsigned);
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            boolean written = false;
+            for (long key : filler) {
+                if (!written && Long.compareUnsigned(key, startKey) > 0) {
+                    writeEntry(data, startKey, startMove, 7);
+                    written = true;
+                }
+                writeEntry(data, key, startMove, 1);
+            }
+            if (!written) {
+                writeEntry(data, startKey, startMove, 7);
+            }
+        }
+
+        OpeningBook book = OpeningBook.open(file, KEYS);
+        assertEquals(filler.length + 1, book.size());
+        ChessGame game = new ChessGame();
+        assertEquals(List.of(new BookMove(move("e2e4"), 7)), book.lookup(game));
+
+        int lookups = 100_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            book.lookup(game);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%d lookups, %d ns each%n", lookups, nanos / lookups);
+    }
+
+    private static void writeEntry(DataOutputStream data, long key, int move, int weight) throws IOException {
+        data.writeLong(key);
+        data.writeShort(move);
+        data.writeShort(weight);
+        data.writeInt(0);
+    }
+
+    private static long[] longs(int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i + 1;
+        }
+        return values;
+    }
+
+    private static ChessMove move(String text) {
+        return new ChessMove(new ChessPosition(text.charAt(1) - '0', text.charAt(0) - 'a' + 1),
+                new ChessPosition(text.charAt(3) - '0', text.charAt(2) - 'a' + 1), null);
+    }
+}
@@ -0,0 +1,133 @@
+package chess.endgame;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.MoveList;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitbaseTest {
+
+    private static Bitbases bitbases;
+
+    @BeforeAll
+    public static void generate() {
+        bitbases = Bitbases.generate();
+    }
+
+    @Test
+    public void knowsClassicPawnEndings() {
+        // the black king is outside the square of the pawn
+        assertEquals(Bitbases.Result.WIN, probe("7k/8/8/8/8/8/P7/K7 w - - 0 1"));
+        assertEquals(Bitbases.Result.LOSS, probe("7k/8/8/8/8/8/P7/K7 b - - 0 1"));
+        // a rook pawn with the defender in the corner
+        assertEquals(Bitbases.Result.DRAW, probe("k7/8/K7/P7/8/8/8/8 w - - 0 1"));
+        // the same ending with black holding the pawn
+        assertEquals(Bitbases.Result.WIN, probe("k7/p7/8/8/8/8/8/7K b - - 0 1"));
+        assertEquals(Bitbases.Result.DRAW, probe("8/8/8/8/p7/k7/8/K7 w - - 0 1"));
+    }
+
+    @Test
+    public void knowsPieceEndings() {
+        assertEquals(Bitbases.Result.WIN, probe("8/8/8/4k3/8/8/8/R3K3 w - - 0 1"));
+        assertEquals(Bitbases.Result.LOSS, probe("8/8/8/4k3/8/8/8/R3K3 b - - 0 1"));
+        // the white king takes the undefended queen
+        assertEquals(Bitbases.Result.DRAW, probe("8/8/8/8/8/8/3q4/4K2k w - - 0 1"));
+        // stalemate
+        assertEquals(Bitbases.Result.DRAW, probe("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"));
+        assertEquals(Bitbases.Result.WIN, probe("8/8/8/4k3/8/8/8/2BNK3 w - - 0 1"));
+    }
+
+    @Test
+    public void ignoresUncoveredPositions() {
+        assertNull(bitbases.probe(new ChessGame()));
+        assertNull(probe("8/8/8/4k3/8/8/8/RR2K3 w - - 0 1"));
+        assertNull(probe("8/8/8/4k3/8/8/8/2BBK3 w - - 0 1"));
+        assertNull(new Bitbases().probe(ChessGame.fromFen("8/8/8/4k3/8/8/8/R3K3 w - - 0 1")));
+    }
+
+    @Test
+    public void agreesWithTheRulesOfEveryMove() {
+        Random random = new Random(18);
+        MoveList moves = new MoveList();
+        for (Ending ending : Ending.values()) {
+            int checked = 0;
+            while (checked < 2000) {
+                ChessGame game = randomPosition(ending, random);
+                if (game == null) {
+                    continue;
+                }
+                checked++;
+                Bitbases.Result expected = Bitbases.Result.LOSS;
+                moves.clear();
+                game.generateMoves(game.getTeamTurn(), moves);
+                if (moves.isEmpty() && !game.isInCheck(game.getTeamTurn())) {
+                    expected = Bitbases.Result.DRAW;
+                }
+                for (int i = 0; i < moves.size(); i++) {
+                    game.doMove(moves.get(i));
+                    Bitbases.Result reply = bitbases.probe(game);
+                    game.undoMove();
+                    if (reply == null || reply == Bitbases.Result.DRAW) {
+                        expected = (expected == Bitbases.Result.WIN) ? expected : Bitbases.Result.DRAW;
+                    } else if (reply == Bitbases.Result.LOSS) {
+                        expected = Bitbases.Result.WIN;
+                    }
+                }
+                assertEquals(expected, bitbases.probe(game), ending + " " + game.toFen());
+            }
+        }
+    }
+
+    @Test
+    public void writesAndMapsFiles(@TempDir Path directory) throws Exception {
+        bitbases.write(directory);
+        Bitbases loaded = Bitbases.load(directory);
+        Random random = new Random(5);
+        for (Ending ending : Ending.values()) {
+            assertTrue(loaded.covers(ending));
+            for (int i = 0; i < 500; i++) {
+                ChessGame game = randomPosition(ending, random);
+                if (game != null) {
+                    assertEquals(bitbases.probe(game), loaded.probe(game));
+                }
+            }
+        }
+        assertFalse(Bitbases.load(directory.resolve("missing")).covers(Ending.KQK));
+    }
+
+    private static Bitbases.Result probe(String fen) {
+        return bitbases.probe(ChessGame.fromFen(fen));
+    }
+
+    /**
+     * @return a legal position of the ending with random colors, or null if the draw was illegal
+     */
+    private static ChessGame randomPosition(Ending ending, Random random) {
+        ChessGame.TeamColor strong = random.nextBoolean() ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessGame.TeamColor weak = (strong == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < ending.squareCount(); i++) {
+            ChessPiece.PieceType type = ending.type(i);
+            int row = (type == ChessPiece.PieceType.PAWN) ? 2 + random.nextInt(6) : 1 + random.nextInt(8);
+            ChessPosition position = new ChessPosition(row, 1 + random.nextInt(8));
+            if (board.getPiece(position) != null) {
+                return null;
+            }
+            board.addPiece(position, ChessPiece.of(i == ending.squareCount() - 1 ? weak : strong, type));
+        }
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(random.nextBoolean() ? strong : weak);
+        ChessGame.TeamColor waiting = (game.getTeamTurn() == strong) ? weak : strong;
+        return game.isInCheck(waiting) ? null : game;
+    }
+}
@@ -0,0 +1,117 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EngineTest {
+
+    @Test
+    public void findsBackRankMate() {
+        SearchResult result = new Engine().search(ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"),
+                SearchLimits.depth(3));
+
+        assertEquals(move(1, 1, 8, 1), result.bestMove());
+        assertTrue(result.isMate());
+        assertEquals(1, result.matePlies());
+    }
+
+    @Test
+    public void findsMateInTwo() throws Exception {
+        ChessGame game = ChessGame.fromFen("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(4));
+
+        assertTrue(result.isMate());
+        assertEquals(3, result.matePlies());
+        assertTrue(result.score() > 0);
+
+        // the principal variation is a playable line that ends in mate
+        for (ChessMove move : result.principalVariation()) {
+            game.makeMove(move);
+        }
+        assertEquals(3, result.principalVariation().size());
+        assertTrue(game.isInCheckmate(game.getTeamTurn()));
+    }
+
+    @Test
+    public void winsAHangingQueen() {
+        SearchResult result = new Engine().search(ChessGame.fromFen("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1"),
+                SearchLimits.depth(4));
+
+        assertEquals(move(2, 4, 5, 4), result.bestMove());
+        assertTrue(result.score() > 300);
+    }
+
+    @Test
+    public void avoidsAPoisonedCapture() {
+        // taking the defended pawn loses the queen
+        SearchResult result = new Engine().search(ChessGame.fromFen("4k3/2p5/3p4/8/8/8/3Q4/4K3 w - - 0 1"),
+                SearchLimits.depth(3));
+
+        assertNotEquals(move(2, 4, 6, 4), result.bestMove());
+        assertTrue(result.score() > 0);
+    }
+
+    @Test
+    public void reportsPositionsWithoutMoves() {
+        SearchResult stalemate = new Engine().search(ChessGame.fromFen("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"),
+                SearchLimits.depth(3));
+        assertNull(stalemate.bestMove());
+        assertEquals(0, stalemate.score());
+
+        SearchResult mated = new Engine().search(ChessGame.fromFen("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1"),
+                SearchLimits.depth(3));
+        assertNull(mated.bestMove());
+        assertTrue(mated.isMate());
+        assertTrue(mated.score() < 0);
+    }
+
+    @Test
+    public void stopsAtTheNodeLimitWithoutTouchingTheGame() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        String fen = game.toFen();
+        SearchResult result = new Engine().search(game, SearchLimits.nodes(20_000));
+
+        assertNotNull(result.bestMove());
+        assertTrue(result.nodes() <= 20_000);
+        assertTrue(game.isLegal(result.bestMove()));
+        assertEquals(fen, game.toFen());
+    }
+
+    @Test
+    public void scoresACutShortFirstIterationByItsFinishedMoves() {
+        // every move keeps a queen up, so no finished root move scores anywhere near 0
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/8/Q3K3 w - - 0 1");
+        long full = new Engine().search(game, SearchLimits.depth(1)).nodes();
+        for (long limit = 1; limit < full; limit++) {
+            SearchResult result = new Engine().search(game, SearchLimits.nodes(limit));
+            if (result.depth() > 0) {
+                assertTrue(result.score() > 500, limit + " nodes scored " + result.score());
+            }
+        }
+    }
+
+    @Test
+    public void stopsAtTheTimeLimit() {
+        long start = System.nanoTime();
+        SearchResult result = new Engine().search(new ChessGame().snapshot(), SearchLimits.millis(200));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertNotNull(result.bestMove());
+        assertTrue(result.depth() >= 1);
+        assertTrue(millis < 2_000, "took " + millis + " ms");
+    }
+
+    @Test
+    public void rejectsMissingLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new SearchLimits(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> SearchLimits.depth(-1));
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+}
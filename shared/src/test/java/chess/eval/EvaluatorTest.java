@@ -0,0 +1,158 @@
+package chess.eval;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.MoveList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluatorTest {
+
+    private static final String[] POSITIONS = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "4k3/8/8/3P4/8/8/8/4K3 w - - 0 1",
+    };
+
+    @Test
+    public void startingPositionIsEven() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        assertEquals(0, new Evaluator().evaluate(board));
+        assertEquals(0, new Evaluator().evaluate(new ChessGame()));
+    }
+
+    @Test
+    public void mirroredPositionsScoreOpposite() {
+        Evaluator evaluator = new Evaluator();
+        for (String fen : POSITIONS) {
+            ChessGame game = ChessGame.fromFen(fen);
+            ChessGame mirrored = ChessGame.fromFen(mirror(fen));
+            assertEquals(evaluator.evaluate(game.getBoard()), -evaluator.evaluate(mirrored.getBoard()), fen);
+            assertEquals(evaluator.evaluate(game), evaluator.evaluate(mirrored), fen);
+        }
+    }
+
+    @Test
+    public void incrementalTermsMatchAFreshBoard() {
+        Random random = new Random(17);
+        for (String fen : POSITIONS) {
+            ChessGame game = ChessGame.fromFen(fen);
+            MoveList moves = new MoveList();
+            for (int ply = 0; ply < 40; ply++) {
+                moves.clear();
+                game.generateMoves(game.getTeamTurn(), moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                game.doMove(moves.get(random.nextInt(moves.size())));
+                assertSameTerms(ChessGame.fromFen(game.toFen()).getBoard(), game.getBoard());
+            }
+            while (true) {
+                try {
+                    game.undoMove();
+                } catch (IllegalStateException done) {
+                    break;
+                }
+            }
+            assertSameTerms(ChessGame.fromFen(fen).getBoard(), game.getBoard());
+        }
+    }
+
+    @Test
+    public void pawnCacheAgreesWithAFreshEvaluator() {
+        Evaluator cached = new Evaluator(16);
+        Random random = new Random(3);
+        ChessGame game = new ChessGame();
+        MoveList moves = new MoveList();
+        for (int ply = 0; ply < 200; ply++) {
+            moves.clear();
+            game.generateMoves(game.getTeamTurn(), moves);
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.doMove(moves.get(random.nextInt(moves.size())));
+            assertEquals(new Evaluator().evaluate(game), cached.evaluate(game));
+            assertEquals(new Evaluator().evaluate(game), cached.evaluate(game));
+        }
+    }
+
+    @Test
+    public void rewardsPassedPawnsAndPunishesWeakOnes() {
+        Evaluator evaluator = new Evaluator();
+        int passed = evaluator.evaluate(ChessGame.fromFen("4k3/8/8/3P4/8/8/8/4K3 w - - 0 1").getBoard());
+        int blocked = evaluator.evaluate(ChessGame.fromFen("4k3/3p4/8/3P4/8/8/8/4K3 w - - 0 1").getBoard());
+        assertTrue(passed > 130, "passed pawn scores " + passed);
+        assertTrue(blocked < 50, "blocked pawns score " + blocked);
+
+        int healthy = evaluator.evaluate(ChessGame.fromFen("4k3/pp6/8/8/8/8/PP6/4K3 w - - 0 1").getBoard());
+        int doubled = evaluator.evaluate(ChessGame.fromFen("4k3/pp6/8/8/8/P7/P7/4K3 w - - 0 1").getBoard());
+        assertTrue(doubled < healthy);
+    }
+
+    @Test
+    public void prefersAShelteredKing() {
+        // same material, but white's pawns have left the king
+        Evaluator evaluator = new Evaluator();
+        int sheltered = evaluator.evaluate(ChessGame.fromFen("r2q1rk1/ppp2ppp/8/8/8/8/5PPP/R2Q1RK1 w - - 0 1").getBoard());
+        int exposed = evaluator.evaluate(ChessGame.fromFen("r2q1rk1/ppp2ppp/8/8/8/8/PPP5/R2Q1RK1 w - - 0 1").getBoard());
+        assertTrue(exposed < sheltered - 30, sheltered + " vs " + exposed);
+    }
+
+    @Test
+    public void evaluatesQuickly() {
+        Evaluator evaluator = new Evaluator();
+        ChessGame[] games = new ChessGame[POSITIONS.length];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = ChessGame.fromFen(POSITIONS[i]);
+        }
+        long sum = 0;
+        int count = 0;
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 200_000_000L) {
+            for (ChessGame game : games) {
+                sum += evaluator.evaluate(game);
+                count++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("evaluated %d positions, %d positions/s (checksum %d)%n",
+                count, count * 1_000_000_000L / nanos, sum);
+        assertTrue(count > 0);
+    }
+
+    private static void assertSameTerms(ChessBoard expected, ChessBoard actual) {
+        assertEquals(expected.pieceKey(), actual.pieceKey());
+        assertEquals(expected.pawnKey(), actual.pawnKey());
+        assertEquals(expected.midgameScore(), actual.midgameScore());
+        assertEquals(expected.endgameScore(), actual.endgameScore());
+    }
+
+    /**
+     * @return the FEN with the board turned around and the colors swapped
+     */
+    private static String mirror(String fen) {
+        String[] fields = fen.split(" ");
+        String[] rows = fields[0].split("/");
+        StringBuilder board = new StringBuilder();
+        for (int i = rows.length - 1; i >= 0; i--) {
+            board.append(swapCase(rows[i])).append(i > 0 ? "/" : "");
+        }
+        String castling = fields[2].equals("-") ? "-" : swapCase(fields[2]);
+        castling = castling.equals("-") ? "-" : castling.replaceAll("[a-z]", "") + castling.replaceAll("[A-Z]", "");
+        return board + (fields[1].equals("w") ? " b " : " w ") + castling + " - 0 1";
+    }
+
+    private static String swapCase(String text) {
+        StringBuilder swapped = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            swapped.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+        }
+        return swapped.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import websocket.commands.ConnectCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveMessageTest {
+
+    private static final Gson GSON = new Gson();
+
+    @Test
+    public void replaysMovesByPlyNumber() throws Exception {
+        ChessGame server = new ChessGame();
+        ChessGame client = GSON.fromJson(GSON.toJson(new LoadGameMessage(server.snapshot())),
+                LoadGameMessage.class).getGame().copy();
+        assertEquals(0, client.getPlyNumber());
+
+        String[] moves = {"e2e4", "e7e5", "g1f3", "b8c6", "f1b5"};
+        for (String text : moves) {
+            ChessMove move = move(text);
+            server.makeMove(move);
+            String json = GSON.toJson(new MoveMessage(move, server.getPlyNumber(),
+                    server.status(server.getTeamTurn())));
+            assertTrue(json.length() * 2 < GSON.toJson(new LoadGameMessage(server.snapshot())).length());
+
+            MoveMessage received = GSON.fromJson(json, MoveMessage.class);
+            assertEquals(client.getPlyNumber() + 1, received.getSequence());
+            client.makeMove(received.getMove());
+            assertEquals(ChessGame.GameStatus.ONGOING, received.getStatus());
+        }
+        assertEquals(server.toFen(), client.toFen());
+        assertEquals(5, client.getPlyNumber());
+    }
+
+    @Test
+    public void writesMovesAsCoordinates() {
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1),
+                ChessPiece.PieceType.KNIGHT);
+        MoveMessage message = new MoveMessage(promotion, 41, ChessGame.GameStatus.CHECK);
+        String json = GSON.toJson(message);
+        assertTrue(json.contains("\"b7a8n\""), json);
+        assertEquals(message, GSON.fromJson(json, MoveMessage.class));
+    }
+
+    @Test
+    public void plainConnectDoesNotAskForMoves() {
+        String plain = GSON.toJson(new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 3));
+        assertFalse(GSON.fromJson(plain, ConnectCommand.class).wantsMoveUpdates());
+        String updates = GSON.toJson(new ConnectCommand("token", 3, true));
+        assertTrue(GSON.fromJson(updates, ConnectCommand.class).wantsMoveUpdates());
+        assertEquals(UserGameCommand.CommandType.CONNECT,
+                GSON.fromJson(updates, UserGameCommand.class).getCommandType());
+    }
+
+    private static ChessMove move(String text) {
+        return new ChessMove(new ChessPosition(text.charAt(1) - '0', text.charAt(0) - 'a' + 1),
+                new ChessPosition(text.charAt(3) - '0', text.charAt(2) - 'a' + 1), null);
+    }
+}